@@ -1,7 +1,12 @@
 package de.medieninformatik.client;
 
+import de.medieninformatik.Message.ChunkAssembler;
+import de.medieninformatik.Message.Chunks;
 import de.medieninformatik.Message.Message;
+import de.medieninformatik.Message.Outbox;
+import de.medieninformatik.Message.Presence;
 import de.medieninformatik.server.Nachricht;
+import de.medieninformatik.transport.Transport;
 import jakarta.websocket.*;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -21,13 +26,17 @@ import javafx.stage.Stage;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.Socket;
+import java.io.Writer;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author jurgen
@@ -41,14 +50,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *
  * Das Fenster besteht aus 3 Bereichen:
  * 1.das Verlaufs-Fenster gibt den Chat-Verlauf seit dem Einlogen wieder.
- *  Ebenso werden Meldungen zum Ein-/und Ausloggen angezeigt.
+ *  Ebenso werden Meldungen zum Ein-/und Ausloggen angezeigt. Beim Einloggen
+ *  wird die Liste der bereits angemeldeten Nutzer angezeigt, die Anzahl
+ *  steht im Fenstertitel.
  *
  * 2. Die Eingabezeile hat zwei Funktionen:
  *   a) Vor dem Einloggen wird hier der Nutzername angegeben (ohne die
  *   Return-Taste zu drücken).
  *   b) Nach dem Einloggen werden hier die Chat-Nachrichten an den Server
  *   eingegeben. Durch Drücken der Return-taste wird die Nachricht an
- *   den Server geschickt.
+ *   den Server geschickt. Beginnt die Nachricht mit "@name ", wird sie
+ *   als private Nachricht nur an den Nutzer name geschickt.
+ *   Lange Texte werden in Teilstücken (CHUNK) gesendet, die sich mit
+ *   anderen Nachrichten abwechseln, und beim Empfänger zusammengesetzt.
  *
  * 3. Der Eingabeknopf:
  *   a) Falls der Nutzer noch nicht eingeloggt ist, dann wird durch Drücken
@@ -56,6 +70,12 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *   und dieser Nutzer am Server angemeldet.
  *   b) Falls der Nutzer angemeldet ist, wird er durch Drücken des Knopfes
  *   abgemeldet.
+ *
+ * Bricht die Verbindung ab, verbindet sich der Client neu und meldet sich
+ * mit RESUME, dem Token vom Server und der letzten empfangenen
+ * Sequenznummer wieder an. Der Server schickt dann nur die verpassten
+ * Nachrichten. Kennt der Server das Token nicht (z.B. nach einem Neustart),
+ * meldet sich der Client neu an.
  */
 @ClientEndpoint
 public class Client extends Application {
@@ -68,8 +88,11 @@ public class Client extends Application {
     private final String FONT = " -fx-font: " + FONTSIZE + "pt \"Arial\";";
     private final String BG_GRAY = " -fx-background-color: \"lightgray\";";
     private final String BG_RED  = " -fx-background-color: \"red\";";
+    private final int RECONNECT_VERSUCHE = 5;
+    private final long RECONNECT_PAUSE_MS = 500; // verdoppelt sich je Versuch, davon 50-100 % zufällig
     private String host;
     private int port;
+    private String socketPath; // Unix-Domain-Socket statt TCP, falls gesetzt
     private Stage stage;
     private Button button;
     private TextField eingabeZeile;
@@ -79,10 +102,24 @@ public class Client extends Application {
     private Semaphore semaphore; // verhindert cleanup-run bevor letzte msg gesendet
     private Service<Void> service;
     private Service<Void> sendService;
-    private BlockingQueue<Message> messages;
-    private Socket socket;
-    private ObjectOutputStream out;
-    private ObjectInputStream in;
+    private Outbox<Message> messages; // Sende-Warteschlange, Teilstücke abwechselnd mit Nachrichten
+    private ChunkAssembler assembler; // nur in ChatTask benutzt
+    private AtomicLong transferId;
+    private Set<String> online; // angemeldete Nutzer, nur in ChatTask benutzt
+    private AtomicLong lastSeq; // letzte empfangene Sequenznummer, für RESUME
+    private Reconnector reconnector;
+    private volatile String resumeToken; // vom Server nach JOIN, für RESUME
+    // Latenzen aus den Zeitstempeln der Nachrichten, Anzeige mit /latenz
+    private final LatencyHistogram endeZuEnde = new LatencyHistogram("Ende-zu-Ende (eigene)");
+    private final LatencyHistogram serverIntern = new LatencyHistogram("Server intern");
+    private final LatencyHistogram netz = new LatencyHistogram("Netz + Warteschlangen (eigene)");
+    private final LatencyHistogram zustellung = new LatencyHistogram("Server -> hier (inkl. Uhrenabweichung)");
+    private final Object sendLock = new Object(); // schützt out beim Neuverbinden
+    private final Object sitzungLock = new Object();
+    private boolean sitzungAktiv; // Server hat JOIN/RESUME bestätigt, geschützt durch sitzungLock
+    private volatile Transport transport;
+    private volatile ObjectOutputStream out;
+    private volatile ObjectInputStream in;
 
     /**
      * Die vom Service ausgeführte Task.
@@ -96,22 +133,50 @@ public class Client extends Application {
         @Override
         protected Void call() throws Exception {
             semaphore.acquire(); // Verhindert zu frühen cleanup
-            while(isLoggedIn.get()) {
-                Message msg = (Message) in.readObject(); //# gets Message content
-                Message.Action action = msg.action(); //# gets Message action
-
-                final String ausgabe = switch(action) { //# decides output based on the action in the message
-                    case JOIN -> String.format(">>> %s ist angemeldet%n", msg.user());
-                    case SEND -> String.format("%s: %s%n", msg.user(), msg.content());
-                    case LEAVE -> String.format("<<< %s ist abgemeldet%n", msg.user());
-                };
-                Platform.runLater( () -> verlauf.appendText(ausgabe));
-
-                if(action == Message.Action.LEAVE && user.equals(msg.user()))  { //# if user clicked on logout, log user out
-                    isLoggedIn.set(false);
+            try {
+                while(isLoggedIn.get()) {
+                    Message msg;
+                    try {
+                        msg = (Message) in.readObject(); //# gets Message content
+                    } catch(IOException e) { //# connection lost: reconnect and resume
+                        if(!isLoggedIn.get()) continue;
+                        msg = wiederverbinden(); //# first reply on the new connection
+                        if(msg == null) continue;
+                    }
+                    if(msg.seq() > 0) { //# skip duplicates, remember last seen sequence
+                        if(msg.seq() <= lastSeq.get()) continue;
+                        lastSeq.set(msg.seq());
+                    }
+                    Message.Action action = msg.action(); //# gets Message action
+                    if(action == Message.Action.CHUNK) { //# reassemble, show when complete
+                        msg = assembler.accept(msg);
+                        if(msg == null) continue;
+                        action = msg.action();
+                    }
+                    if(msg.timing() != null) latenz(msg);
+
+                    final String ausgabe = switch(action) { //# decides output based on the action in the message
+                        case JOIN -> String.format(">>> %s ist angemeldet%n", msg.user());
+                        case SEND -> String.format("%s: %s%n", msg.user(), msg.content());
+                        case LEAVE -> String.format("<<< %s ist abgemeldet%n", msg.user());
+                        case PRIVATE -> String.format("%s -> %s: %s%n", msg.user(), msg.recipient(), msg.content());
+                        case RESUME -> sitzung(msg);
+                        case BUSY -> ""; // siehe unten
+                        case CHUNK -> ""; // bereits zusammengesetzt
+                        case PRESENCE -> presence(msg);
+                    };
+                    if(!ausgabe.isEmpty()) Platform.runLater( () -> verlauf.appendText(ausgabe));
+
+                    if(action == Message.Action.LEAVE && user.equals(msg.user()))  { //# if user clicked on logout, log user out
+                        isLoggedIn.set(false);
+                    }
+                    if(action == Message.Action.BUSY) { //# server rejected the login (while reconnecting: Reconnector retries)
+                        abbrechen(msg.content());
+                    }
                 }
+            } finally {
+                semaphore.release();
             }
-            semaphore.release();
             return null;
         }
     }
@@ -119,7 +184,9 @@ public class Client extends Application {
     /**
      * SENDS A MESSAGE <br>
      * Wartet auf Nachricht in Warteschlange.
-     * Diese Nachricht wird dann an den Server gesendet.
+     * Diese Nachricht wird dann an den Server gesendet, außer JOIN und
+     * LEAVE aber erst, wenn der Server die Anmeldung bestätigt hat: vor
+     * der Antwort auf ein RESUME würde er sie verwerfen.
      * LEAVE-Nachricht oder isLoggedIn == false beendet die Task
      */
     private class SendTask extends Task<Void> {
@@ -127,8 +194,17 @@ public class Client extends Application {
         protected Void call() throws Exception {
             while(isLoggedIn.get()) {
                Message msg = messages.take(); // Blockiert
-               out.writeObject(msg);
-               out.flush();
+               boolean anmeldung = msg.action() == Message.Action.JOIN || msg.action() == Message.Action.LEAVE;
+               while(true) {
+                   if(!anmeldung && !warteAufSitzung()) return null; //# hold until JOIN/RESUME is confirmed
+                   try {
+                       schreibe(msg);
+                       break;
+                   } catch(IOException e) { //# wait for ChatTask to reconnect, then retry
+                       if(!isLoggedIn.get()) return null;
+                       Thread.sleep(RECONNECT_PAUSE_MS);
+                   }
+               }
                if(msg.action() == Message.Action.LEAVE) {
                    break;
                }
@@ -137,12 +213,84 @@ public class Client extends Application {
         }
     }
 
+    /**
+     * RESUME vom Server: nach JOIN das Token für spätere Wiederanmeldungen,
+     * ohne Token die Ablehnung einer Wiederanmeldung. Dann meldet sich der
+     * Client mit JOIN neu an; verpasste Nachrichten kommen nicht nach.
+     * @param msg RESUME-Nachricht
+     * @return Ausgabe für den Verlauf
+     */
+    private String sitzung(Message msg) {
+        resumeToken = msg.content();
+        sitzungAktiv(resumeToken != null);
+        if(resumeToken != null) return "";
+        lastSeq.set(0);
+        assembler.clear();
+        try {
+            schreibe(new Message(Message.Action.JOIN, user, ""));
+        } catch(IOException e) {
+            // der nächste Lesefehler verbindet neu
+        }
+        return String.format("--- Sitzung nicht fortsetzbar, neu angemeldet%n");
+    }
+
+    /**
+     * @param aktiv true sobald der Server JOIN oder RESUME bestätigt hat,
+     *  false während der (Wieder-)Anmeldung
+     */
+    private void sitzungAktiv(boolean aktiv) {
+        synchronized(sitzungLock) {
+            sitzungAktiv = aktiv;
+            sitzungLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wartet in SendTask, bis der Server die Anmeldung bestätigt hat
+     * @return false falls der Nutzer inzwischen abgemeldet ist
+     * @throws InterruptedException
+     */
+    private boolean warteAufSitzung() throws InterruptedException {
+        synchronized(sitzungLock) {
+            while(!sitzungAktiv && isLoggedIn.get()) sitzungLock.wait(RECONNECT_PAUSE_MS);
+        }
+        return isLoggedIn.get();
+    }
+
+    /**
+     * Wendet eine PRESENCE-Nachricht auf die Liste der angemeldeten
+     * Nutzer an und aktualisiert den Fenstertitel.
+     * @param msg Snapshot oder Delta
+     * @return Ausgabe für den Verlauf
+     */
+    private String presence(Message msg) {
+        Presence.Change change = Presence.decode(msg);
+        StringBuilder ausgabe = new StringBuilder();
+        if(change.snapshot()) {
+            online.clear();
+            online.addAll(change.joined());
+            ausgabe.append(String.format("=== Angemeldet: %s%n", String.join(", ", online)));
+        } else {
+            for(String name : change.joined()) {
+                if(online.add(name)) ausgabe.append(String.format(">>> %s ist angemeldet%n", name));
+            }
+            for(String name : change.left()) {
+                if(online.remove(name)) ausgabe.append(String.format("<<< %s ist abgemeldet%n", name));
+            }
+        }
+        final String title = String.format("ChatClient -- %s (%d angemeldet)", user, online.size());
+        Platform.runLater(() -> stage.setTitle(title));
+        return ausgabe.toString();
+    }
+
     /**
      * Bereitet JavaFX vor (ohne GUI-Elemente)
      * Auf der Kommandozeile des Clienten kann
      * der Host und der Port mit
      * java client --host=localhost --port=60000
-     * übergeben werden.
+     * übergeben werden. Läuft der Server auf demselben Rechner, geht es
+     * auch über einen Unix-Domain-Socket mit
+     * java client --socket=/tmp/chat.sock
      * @throws Exception
      */
     @Override
@@ -151,9 +299,15 @@ public class Client extends Application {
         Map<String, String> map = p.getNamed();
         host = map.getOrDefault("host", "localhost");
         port = Integer.parseInt(map.getOrDefault("port", "60000"));
+        socketPath = map.get("socket");
         isLoggedIn = new AtomicBoolean(false);
+        lastSeq = new AtomicLong(0);
         semaphore = new Semaphore(1);
-        messages = new LinkedBlockingQueue<>();
+        messages = Outbox.forMessages(Integer.MAX_VALUE, Integer.MAX_VALUE); // nur eigene Eingaben
+        assembler = new ChunkAssembler(Chunks.DEFAULT_MAX_SIZE);
+        transferId = new AtomicLong(0);
+        online = new TreeSet<>();
+        reconnector = new Reconnector(this::oeffne, RECONNECT_VERSUCHE, RECONNECT_PAUSE_MS);
     }
 
     /**
@@ -251,10 +405,10 @@ public class Client extends Application {
     private void login() {
         try {
             //# connects to server and creates in and out
-            socket = new Socket(host, port);
-            out = new ObjectOutputStream(socket.getOutputStream());
-            out.flush();
-            in = new ObjectInputStream(socket.getInputStream());
+            verbinde();
+            lastSeq.set(0);
+            resumeToken = null;
+            sitzungAktiv(false);
 
             //# lets user send messages
             sendService = new Service<>() {
@@ -307,6 +461,90 @@ public class Client extends Application {
         }
     }
 
+    /**
+     * Baut die Verbindung zum Server auf und erzeugt die Objektströme
+     * @throws IOException falls der Server nicht erreichbar ist
+     */
+    private void verbinde() throws IOException {
+        transport = oeffne();
+        out = new ObjectOutputStream(transport.getOutputStream());
+        out.flush();
+        in = new ObjectInputStream(transport.getInputStream());
+    }
+
+    /**
+     * @return neue Verbindung zum Server, über TCP oder den Unix-Domain-Socket
+     * @throws IOException falls der Server nicht erreichbar ist
+     */
+    private Transport oeffne() throws IOException {
+        return socketPath != null
+                ? Transport.unix(Path.of(socketPath))
+                : Transport.tcp(host, port);
+    }
+
+    /**
+     * Sendet eine Nachricht über die aktuelle Verbindung
+     * @param msg Nachricht
+     * @throws IOException falls die Verbindung unterbrochen ist
+     */
+    private void schreibe(Message msg) throws IOException {
+        if(msg.action() == Message.Action.SEND || msg.action() == Message.Action.PRIVATE) {
+            msg = msg.withTiming(Message.Timing.sent()); // für die Latenzmessung
+        }
+        synchronized(sendLock) {
+            out.writeObject(msg);
+            out.reset(); // keine Referenzen auf gesendete Nachrichten behalten
+            out.flush();
+        }
+    }
+
+    /**
+     * Wird von der ChatTask bei Verbindungsabbruch aufgerufen.
+     * Baut mit dem Reconnector eine neue Verbindung auf und meldet den
+     * Nutzer mit RESUME (Token und letzte empfangene Sequenznummer) wieder
+     * an; lehnt der Server mit BUSY ab, zählt das als fehlgeschlagener
+     * Versuch. Schlagen alle Versuche fehl, wird der Nutzer abgemeldet.
+     * @return erste Antwort des Servers auf der neuen Verbindung oder null
+     * @throws InterruptedException
+     */
+    private Message wiederverbinden() throws InterruptedException {
+        sitzungAktiv(false); // SendTask hält Nachrichten bis zur Antwort auf RESUME
+        Platform.runLater(() -> verlauf.appendText("--- Verbindung unterbrochen\n"));
+        try {
+            transport.close();
+        } catch(IOException e) {
+            // Nothing to do
+        }
+        Reconnector.Connected c = reconnector.reconnect(
+                new Message(Message.Action.RESUME, user, resumeToken, null, lastSeq.get()), isLoggedIn::get);
+        if(c == null) {
+            abbrechen("Server nicht erreichbar");
+            return null;
+        }
+        synchronized(sendLock) {
+            transport = c.transport();
+            out = c.out();
+            in = c.in();
+        }
+        Platform.runLater(() -> verlauf.appendText("--- wieder verbunden\n"));
+        return c.reply();
+    }
+
+    /**
+     * Meldet den Nutzer ohne Antwort vom Server ab (Server nicht
+     * erreichbar oder überlastet) und beendet damit SendTask und cleanup.
+     * @param grund wird im Verlauf angezeigt
+     */
+    private void abbrechen(String grund) {
+        isLoggedIn.set(false);
+        messages.offer(new Message(Message.Action.LEAVE, user, ""));
+        Platform.runLater(() -> {
+            verlauf.appendText(String.format("--- %s, abgemeldet%n", grund));
+            button.setText("Anmelden");
+            button.setStyle(FONT + BG_GRAY);
+        });
+    }
+
     private void cleanup(WorkerStateEvent e) {
         try {
             semaphore.acquire(); // warte bis ChatTask logout von Server hat
@@ -314,9 +552,11 @@ public class Client extends Application {
             System.err.println(interrupted);
         }
         messages.clear();
+        assembler.clear();
+        online.clear();
         sendService = null;
         service = null;
-        socket = null;
+        transport = null;
         out = null;
         in = null;
         eingabeZeile.setText("");
@@ -335,10 +575,76 @@ public class Client extends Application {
      */
     private void sendeNachricht(ActionEvent event) {
         System.out.println("sendeNachricht()");
-        messages.offer(
-                new Message(Message.Action.SEND, user, eingabeZeile.getText())
-        );
+        String text = eingabeZeile.getText();
+        if(text.startsWith("/latenz")) { //# show or export latency histograms instead of sending
+            zeigeLatenz(text.endsWith("export"));
+            eingabeZeile.setText("");
+            eingabeZeile.requestFocus();
+            return;
+        }
+        String recipient = null;
+        int space = text.indexOf(' ');
+        if(text.startsWith("@") && space > 1) { //# "@name text" -> private message to name
+            recipient = text.substring(1, space);
+            text = text.substring(space + 1);
+        }
+        if(text.length() > Chunks.DEFAULT_CHUNK_SIZE) { //# large text -> send in chunks
+            Chunks.split(user, text, recipient, transferId.incrementAndGet(),
+                    Chunks.DEFAULT_CHUNK_SIZE).forEach(messages::offer);
+        } else if(recipient != null) {
+            messages.offer(
+                    new Message(Message.Action.PRIVATE, user, text, recipient)
+            );
+        } else {
+            messages.offer(
+                    new Message(Message.Action.SEND, user, text)
+            );
+        }
         eingabeZeile.setText("");
         eingabeZeile.requestFocus();
     }
+
+    /**
+     * Wertet die Zeitstempel einer empfangenen Nachricht aus.
+     * Exakt (eine Uhr) sind Server intern und alles an eigenen Nachrichten,
+     * die als Echo zurückkommen. Bei Nachrichten anderer enthält
+     * "Server -> hier" die Abweichung zwischen Server- und Client-Uhr.
+     * Läuft in ChatTask.
+     * @param msg Nachricht mit Zeitstempeln
+     */
+    private void latenz(Message msg) {
+        Message.Timing t = msg.timing();
+        if(t.serverReceive() == 0 || t.serverDispatch() == 0) return;
+        long now = Message.Timing.now();
+        long server = t.serverDispatch() - t.serverReceive();
+        serverIntern.record(server);
+        if(user.equals(msg.user()) && t.clientSend() > 0) {
+            long gesamt = now - t.clientSend();
+            endeZuEnde.record(gesamt);
+            netz.record(gesamt - server);
+        } else {
+            zustellung.record(now - t.serverDispatch());
+        }
+    }
+
+    /**
+     * Zeigt die Latenz-Histogramme im Verlauf an (Eingabe /latenz) oder
+     * schreibt sie als CSV in das aktuelle Verzeichnis (/latenz export)
+     * @param export true für CSV-Datei
+     */
+    private void zeigeLatenz(boolean export) {
+        List<LatencyHistogram> alle = List.of(endeZuEnde, serverIntern, netz, zustellung);
+        if(!export) {
+            alle.forEach(h -> verlauf.appendText(h.summary() + System.lineSeparator()));
+            return;
+        }
+        Path datei = Path.of(String.format("latenz-%d.csv", System.currentTimeMillis()));
+        try(Writer w = Files.newBufferedWriter(datei)) {
+            w.write(String.format("name;von_us;bis_us;anzahl%n"));
+            for(LatencyHistogram h : alle) h.writeCsv(w);
+            verlauf.appendText(String.format("--- Latenzen gespeichert: %s%n", datei.toAbsolutePath()));
+        } catch(IOException e) {
+            verlauf.appendText(String.format("--- Export fehlgeschlagen: %s%n", e.getMessage()));
+        }
+    }
 }
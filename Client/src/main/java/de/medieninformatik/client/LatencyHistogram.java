@@ -0,0 +1,121 @@
+package de.medieninformatik.client;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Histogramm für Latenzen in Mikrosekunden mit logarithmischen Klassen:
+ * je Zweierpotenz 8 Unterklassen, also höchstens 12,5 % Abweichung bei
+ * konstantem Speicher, egal wie viele Werte aufgezeichnet werden.
+ * Negative Werte (Uhrenabweichung zwischen Rechnern) zählen als 0.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXP = 40; // 2^40 µs, etwa 12 Tage
+
+    private final String name;
+    private final long[] counts = new long[index(1L << MAX_EXP) + 1];
+    private long total;
+    private long sum;
+    private long max;
+
+    /**
+     * Konstruktor
+     * @param name Bezeichnung für Anzeige und Export
+     */
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return Bezeichnung
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Zeichnet einen Wert auf
+     * @param micros Latenz in Mikrosekunden
+     */
+    public synchronized void record(long micros) {
+        long v = Math.max(0, Math.min(micros, 1L << MAX_EXP));
+        counts[index(v)]++;
+        total++;
+        sum += v;
+        max = Math.max(max, v);
+    }
+
+    /**
+     * @return Anzahl aufgezeichneter Werte
+     */
+    public synchronized long count() {
+        return total;
+    }
+
+    /**
+     * Obergrenze der Klasse, in der das Perzentil liegt
+     * @param p Perzentil zwischen 0 und 100
+     * @return Latenz in Mikrosekunden, 0 ohne Werte
+     */
+    public synchronized long percentile(double p) {
+        if(total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * total));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= rank) return Math.min(upper(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Verwirft alle Werte
+     */
+    public synchronized void clear() {
+        Arrays.fill(counts, 0);
+        total = sum = max = 0;
+    }
+
+    /**
+     * Kurzfassung für die Anzeige, Zeiten in ms
+     * @return z.B. "Server intern: n=120 mittel=0,41 p50=0,38 p90=0,61 p99=1,2 max=3,4 ms"
+     */
+    public synchronized String summary() {
+        if(total == 0) return String.format("%s: keine Werte", name);
+        return String.format("%s: n=%d mittel=%.2f p50=%.2f p90=%.2f p99=%.2f max=%.2f ms",
+                name, total, sum / 1000.0 / total, percentile(50) / 1000.0,
+                percentile(90) / 1000.0, percentile(99) / 1000.0, max / 1000.0);
+    }
+
+    /**
+     * Schreibt die belegten Klassen als CSV-Zeilen: name;von_us;bis_us;anzahl
+     * @param out Ziel
+     * @throws IOException
+     */
+    public synchronized void writeCsv(Appendable out) throws IOException {
+        for(int i = 0; i < counts.length; i++) {
+            if(counts[i] == 0) continue;
+            out.append(String.format("%s;%d;%d;%d%n", name, lower(i), upper(i), counts[i]));
+        }
+    }
+
+    private static int index(long v) {
+        if(v < SUB_COUNT) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        int sub = (int) (v >> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    private static long lower(int index) {
+        if(index < SUB_COUNT) return index;
+        int exp = index / SUB_COUNT + SUB_BITS - 1;
+        int sub = index % SUB_COUNT;
+        return (long) (SUB_COUNT + sub) << (exp - SUB_BITS);
+    }
+
+    private static long upper(int index) {
+        return lower(index + 1) - 1;
+    }
+}
@@ -0,0 +1,93 @@
+package de.medieninformatik.client;
+
+import de.medieninformatik.Message.Message;
+import de.medieninformatik.transport.Transport;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Neuverbinden nach einem Verbindungsabbruch mit wachsenden, zufällig
+ * verkürzten Pausen. Ein Versuch gilt erst als gelungen, wenn der Server
+ * auf das RESUME antwortet und die Verbindung nicht mit BUSY ablehnt:
+ * nach einem Neustart des Servers kommen viele Clients zugleich, und die
+ * Begrenzung neuer Verbindungen lehnt einen Teil davon ab. Diese Clients
+ * versuchen es weiter, Token und Sequenznummer bleiben erhalten.
+ */
+class Reconnector {
+
+    /**
+     * Baut eine neue Verbindung zum Server auf
+     */
+    interface Connector {
+        Transport connect() throws IOException;
+    }
+
+    /**
+     * Neue Verbindung mit ihren Objektströmen
+     * @param transport Verbindung
+     * @param out Ausgabestrom, Header bereits geschrieben
+     * @param in Eingabestrom
+     * @param reply erste Antwort des Servers, weiter zu verarbeiten wie jede Nachricht
+     */
+    record Connected(Transport transport, ObjectOutputStream out, ObjectInputStream in, Message reply) {
+    }
+
+    private final Connector connector;
+    private final int attempts;
+    private final long pauseMillis;
+
+    /**
+     * Konstruktor
+     * @param connector baut eine Verbindung auf (TCP oder Unix-Domain-Socket)
+     * @param attempts maximale Anzahl Versuche
+     * @param pauseMillis Pause vor dem ersten Versuch, verdoppelt sich je Versuch,
+     *  davon 50-100 % zufällig
+     */
+    Reconnector(Connector connector, int attempts, long pauseMillis) {
+        this.connector = connector;
+        this.attempts = attempts;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Verbindet neu und schickt die RESUME-Nachricht, bei jedem Versuch dieselbe
+     * @param resume RESUME mit Token und letzter Sequenznummer
+     * @param proceed false bricht ab, z.B. nach Abmelden des Nutzers
+     * @return die neue Verbindung oder null, falls alle Versuche fehlschlagen
+     * @throws InterruptedException
+     */
+    Connected reconnect(Message resume, BooleanSupplier proceed) throws InterruptedException {
+        long pause = pauseMillis;
+        for(int i = 0; i < attempts && proceed.getAsBoolean(); i++) {
+            // zufällig verteilt: nach einem Serverausfall kommen nicht alle Clients zugleich
+            Thread.sleep(pause / 2 + ThreadLocalRandom.current().nextLong(pause / 2 + 1));
+            pause *= 2;
+            Transport transport = null;
+            try {
+                transport = connector.connect();
+                ObjectOutputStream out = new ObjectOutputStream(transport.getOutputStream());
+                out.writeObject(resume);
+                out.flush();
+                ObjectInputStream in = new ObjectInputStream(transport.getInputStream());
+                Message reply = (Message) in.readObject();
+                if(reply.action() != Message.Action.BUSY)
+                    return new Connected(transport, out, in, reply);
+                System.err.println("Server überlastet: " + reply.content());
+            } catch(IOException | ClassNotFoundException e) {
+                System.err.println(e);
+            }
+            if(transport != null) {
+                try {
+                    transport.close();
+                } catch(IOException e) {
+                    // Nothing to do
+                }
+            }
+        }
+        return null;
+    }
+}
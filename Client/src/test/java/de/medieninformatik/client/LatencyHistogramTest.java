@@ -0,0 +1,69 @@
+package de.medieninformatik.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesWithinClassError() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        for(int v = 1; v <= 10_000; v++) h.record(v);
+
+        assertEquals(10_000, h.count());
+        for(double p : new double[]{50, 90, 99}) {
+            long exact = (long) (p * 100);
+            long value = h.percentile(p);
+            assertTrue(value >= exact && value <= exact * 1.125,
+                    "p" + p + ": " + value + " statt " + exact);
+        }
+        assertEquals(10_000, h.percentile(100));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        for(int v = 0; v < 8; v++) h.record(v);
+        assertEquals(3, h.percentile(50));
+        assertEquals(7, h.percentile(100));
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        h.record(-500);
+        assertEquals(1, h.count());
+        assertEquals(0, h.percentile(100));
+    }
+
+    @Test
+    void clearForgetsValues() {
+        LatencyHistogram h = new LatencyHistogram("test");
+        h.record(42);
+        h.clear();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(50));
+        assertEquals("test: keine Werte", h.summary());
+    }
+
+    @Test
+    void csvClassesAreContiguous() throws IOException {
+        LatencyHistogram h = new LatencyHistogram("rtt");
+        for(int v = 0; v < 1000; v++) h.record(v);
+        StringBuilder csv = new StringBuilder();
+        h.writeCsv(csv);
+
+        long next = 0, sum = 0;
+        for(String line : csv.toString().split("\\R")) {
+            String[] f = line.split(";");
+            assertEquals("rtt", f[0]);
+            assertEquals(next, Long.parseLong(f[1]), "Lücke vor " + line);
+            next = Long.parseLong(f[2]) + 1;
+            sum += Long.parseLong(f[3]);
+        }
+        assertEquals(1000, sum);
+    }
+}
@@ -0,0 +1,97 @@
+package de.medieninformatik.client;
+
+import de.medieninformatik.Message.Message;
+import de.medieninformatik.transport.PipeAcceptor;
+import de.medieninformatik.transport.Transport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Timeout(10)
+class ReconnectorTest {
+    private final PipeAcceptor acceptor = new PipeAcceptor();
+    private final List<Message> received = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connects = new AtomicInteger();
+    private final Message resume = new Message(Message.Action.RESUME, "anna", "token", null, 42);
+
+    @AfterEach
+    void close() {
+        acceptor.close();
+    }
+
+    /**
+     * Server, der die ersten busy Verbindungen mit BUSY ablehnt wie
+     * ChatServer.reject und danach das RESUME bestätigt
+     */
+    private void serve(int busy) {
+        Thread server = new Thread(() -> {
+            try {
+                for(int i = 0; ; i++) {
+                    Transport t = acceptor.accept();
+                    ObjectOutputStream out = new ObjectOutputStream(t.getOutputStream());
+                    if(i < busy) {
+                        out.writeObject(new Message(Message.Action.BUSY, "Server", "überlastet"));
+                        out.flush();
+                        t.close();
+                        continue;
+                    }
+                    out.flush();
+                    ObjectInputStream in = new ObjectInputStream(t.getInputStream());
+                    received.add((Message) in.readObject());
+                    out.writeObject(new Message(Message.Action.RESUME, "anna", "neu"));
+                    out.flush();
+                }
+            } catch(IOException | ClassNotFoundException e) {
+                // Acceptor geschlossen
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+    }
+
+    private Reconnector reconnector(int attempts) {
+        return new Reconnector(() -> {
+            connects.incrementAndGet();
+            return acceptor.connect();
+        }, attempts, 2);
+    }
+
+    @Test
+    void busyCountsAsFailedAttempt() throws Exception {
+        serve(2);
+        Reconnector.Connected c = reconnector(5).reconnect(resume, () -> true);
+
+        assertNotNull(c, "nach BUSY weiter versucht");
+        assertEquals(3, connects.get());
+        assertEquals(Message.Action.RESUME, c.reply().action());
+        assertEquals("neu", c.reply().content());
+        // Token und Sequenznummer bleiben über die Ablehnungen erhalten
+        assertEquals(1, received.size());
+        assertEquals("token", received.get(0).content());
+        assertEquals(42, received.get(0).seq());
+        c.transport().close();
+    }
+
+    @Test
+    void givesUpAfterAttempts() throws Exception {
+        serve(Integer.MAX_VALUE);
+        assertNull(reconnector(3).reconnect(resume, () -> true));
+        assertEquals(3, connects.get());
+    }
+
+    @Test
+    void stopsWhenLoggedOut() throws Exception {
+        serve(0);
+        assertNull(reconnector(3).reconnect(resume, () -> false));
+        assertEquals(0, connects.get());
+    }
+}
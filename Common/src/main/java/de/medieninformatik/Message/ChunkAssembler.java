@@ -0,0 +1,74 @@
+package de.medieninformatik.Message;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Setzt CHUNK-Nachrichten beim Empfänger schrittweise wieder zusammen.
+ * Die Teilstücke einer Übertragung müssen in Reihenfolge ankommen; eine
+ * Lücke oder ein zu großer Inhalt führen zum Verwerfen der Übertragung.
+ * Bei zu vielen offenen Übertragungen wird die älteste verworfen
+ * (z.B. eine vom Server abgebrochene).
+ * Nicht thread-sicher, wird nur vom empfangenden Thread benutzt.
+ */
+public class ChunkAssembler {
+    private static final int MAX_OPEN_TRANSFERS = 16;
+
+    private static class Partial {
+        private final StringBuilder content = new StringBuilder();
+        private int next = 0;
+    }
+
+    private final int maxSize;
+    private final Map<String, Partial> partials;
+
+    /**
+     * Konstruktor
+     * @param maxSize maximale Größe eines zusammengesetzten Inhalts
+     */
+    public ChunkAssembler(int maxSize) {
+        this.maxSize = maxSize;
+        this.partials = new LinkedHashMap<>() { // Einfüge-Reihenfolge: älteste zuerst
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Partial> eldest) {
+                return size() > MAX_OPEN_TRANSFERS;
+            }
+        };
+    }
+
+    /**
+     * Nimmt ein Teilstück entgegen
+     * @param msg CHUNK-Nachricht
+     * @return die vollständige Nachricht (SEND oder PRIVATE) nach dem
+     *  letzten Teilstück, sonst null
+     */
+    public Message accept(Message msg) {
+        Message.Chunk chunk = msg.chunk();
+        if(msg.action() != Message.Action.CHUNK || chunk == null) return null;
+        String key = msg.user() + '#' + chunk.transferId();
+        Partial p = partials.get(key);
+        if(p == null) {
+            if(chunk.index() != 0) return null; // Anfang fehlt
+            p = new Partial();
+            partials.put(key, p);
+        }
+        if(chunk.index() != p.next || p.content.length() + msg.content().length() > maxSize) {
+            partials.remove(key); // Lücke oder zu groß: Übertragung verwerfen
+            return null;
+        }
+        p.content.append(msg.content());
+        p.next++;
+        if(!chunk.isLast()) return null;
+        partials.remove(key);
+        Message.Action action = msg.recipient() != null ?
+                Message.Action.PRIVATE : Message.Action.SEND;
+        return new Message(action, msg.user(), p.content.toString(), msg.recipient());
+    }
+
+    /**
+     * Verwirft alle offenen Übertragungen
+     */
+    public void clear() {
+        partials.clear();
+    }
+}
@@ -0,0 +1,70 @@
+package de.medieninformatik.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Zerlegt große Inhalte in CHUNK-Nachrichten begrenzter Größe.
+ * So blockiert ein großer Text weder den Sende-Datenstrom noch die
+ * kleinen Chat-Nachrichten, die beim Empfänger dahinter warten.
+ * Größen sind in Zeichen (String-Länge) angegeben.
+ */
+public final class Chunks {
+    /**
+     * Maximale Größe eines Teilstücks
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * Maximale Größe eines vollständigen Inhalts
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    private Chunks() {
+    }
+
+    /**
+     * Zerlegt den Inhalt in Teilstücke. Surrogat-Paare werden nicht getrennt.
+     * @param user Absender
+     * @param content Inhalt
+     * @param recipient Empfänger oder null für alle
+     * @param transferId Nummer der Übertragung
+     * @param chunkSize maximale Größe eines Teilstücks
+     * @return CHUNK-Nachrichten in Reihenfolge
+     */
+    public static List<Message> split(String user, String content, String recipient,
+                                      long transferId, int chunkSize) {
+        List<String> pieces = new ArrayList<>();
+        int start = 0;
+        while(start < content.length()) {
+            int end = Math.min(start + chunkSize, content.length());
+            if(end < content.length() && Character.isHighSurrogate(content.charAt(end - 1))) end--;
+            pieces.add(content.substring(start, end));
+            start = end;
+        }
+        List<Message> chunks = new ArrayList<>(pieces.size());
+        for(int i = 0; i < pieces.size(); i++) {
+            chunks.add(new Message(Message.Action.CHUNK, user, pieces.get(i), recipient, 0,
+                    new Message.Chunk(transferId, i, pieces.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Länge eines Inhalts in UTF-8, ohne ihn zu kodieren
+     * @param content Inhalt oder null
+     * @return Anzahl Bytes
+     */
+    public static long utf8Length(String content) {
+        if(content == null) return 0;
+        long n = 0;
+        for(int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if(c < 0x80) n += 1;
+            else if(c < 0x800) n += 2;
+            else if(Character.isHighSurrogate(c)) { n += 4; i++; }
+            else n += 3;
+        }
+        return n;
+    }
+}
@@ -1,19 +1,166 @@
 package de.medieninformatik.Message;
 
 import java.io.Serializable;
+import java.time.Instant;
 
 /**
  * Serialisierbare Klasse zum Austausch von Nachrichten
  * zwischen Client und Server.
+ * Der Empfänger ist nur bei privaten Nachrichten gesetzt,
+ * sonst null.
+ * Die Sequenznummer wird vom Server vergeben (streng monoton steigend),
+ * 0 bedeutet "keine Sequenznummer". Bei RESUME enthält sie die letzte
+ * beim Client angekommene Sequenznummer, content das Token, das der
+ * Server nach JOIN mit einer RESUME-Nachricht geschickt hat. Nimmt der
+ * Server ein RESUME an, antwortet er zuerst mit RESUME und einem neuen
+ * Token, lehnt er es ab, mit RESUME ohne Token.
+ * Große Inhalte werden als Folge von CHUNK-Nachrichten übertragen,
+ * chunk beschreibt dann das Teilstück (sonst null), siehe {@link Chunks}.
+ * Teilstücke haben keine Sequenznummer: RESUME liefert sie nicht nach.
+ * Optional trägt eine Nachricht Zeitstempel für die Latenzmessung
+ * (timing, sonst null). Ältere Gegenstellen ignorieren das Feld.
  */
 public record Message(
         Action action,
         String user,
-        String content
+        String content,
+        String recipient,
+        long seq,
+        Chunk chunk,
+        Timing timing
     ) implements Serializable {
 
+    /**
+     * Absender der Hinweise und PRESENCE-Nachrichten des Servers,
+     * kein Nutzer darf so heißen
+     */
+    public static final String SERVER = "Server";
+
     public enum Action {
-        JOIN, SEND, LEAVE // Anmelden, Nachricht senden, Abmelden
+        JOIN, SEND, LEAVE, // Anmelden, Nachricht senden, Abmelden
+        PRIVATE,           // Nachricht nur an recipient
+        RESUME,            // Wiederanmelden nach Verbindungsabbruch, vom Server: Token dafür
+        BUSY,              // Server überlastet, Verbindung abgelehnt
+        CHUNK,             // Teilstück eines großen Inhalts
+        PRESENCE           // angemeldete Nutzer, siehe Presence
+    }
+
+    /**
+     * Teilstück einer Übertragung
+     * @param transferId Nummer der Übertragung, eindeutig je Absender
+     * @param index Nummer des Teilstücks, beginnend bei 0
+     * @param count Anzahl aller Teilstücke
+     */
+    public record Chunk(long transferId, int index, int count) implements Serializable {
+        public boolean isLast() {
+            return index == count - 1;
+        }
+    }
+
+    /**
+     * Zeitstempel einer Nachricht auf ihrem Weg vom Absender über den
+     * Server zu den Empfängern, in Mikrosekunden seit 1970 (Wanduhr).
+     * 0 bedeutet "noch nicht gesetzt". Differenzen zwischen Client- und
+     * Server-Zeit enthalten die Abweichung der Uhren; exakt sind die
+     * Differenzen auf derselben Uhr (Server intern, eigene Nachricht
+     * vom Senden bis zum Empfang des Echos).
+     * @param clientSend Absender hat die Nachricht geschrieben
+     * @param serverReceive Server hat die Nachricht gelesen
+     * @param serverDispatch Server hat die Nachricht an die Empfänger verteilt
+     */
+    public record Timing(long clientSend, long serverReceive, long serverDispatch) implements Serializable {
+        /**
+         * @return Zeitstempel für eine gerade gesendete Nachricht
+         */
+        public static Timing sent() {
+            return new Timing(now(), 0, 0);
+        }
+
+        /**
+         * @return Kopie mit dem Empfangszeitpunkt des Servers
+         */
+        public Timing received() {
+            return new Timing(clientSend, now(), serverDispatch);
+        }
+
+        /**
+         * @return Kopie mit dem Verteilzeitpunkt des Servers
+         */
+        public Timing dispatched() {
+            return new Timing(clientSend, serverReceive, now());
+        }
+
+        /**
+         * @return aktuelle Zeit in Mikrosekunden seit 1970
+         */
+        public static long now() {
+            Instant now = Instant.now();
+            return now.getEpochSecond() * 1_000_000 + now.getNano() / 1_000;
+        }
+    }
+
+    /**
+     * Konstruktor für Nachrichten ohne Empfänger (JOIN, SEND, LEAVE)
+     * @param action Aktion
+     * @param user Absender
+     * @param content Inhalt
+     */
+    public Message(Action action, String user, String content) {
+        this(action, user, content, null, 0, null, null);
+    }
+
+    /**
+     * Konstruktor für Nachrichten ohne Sequenznummer
+     * @param action Aktion
+     * @param user Absender
+     * @param content Inhalt
+     * @param recipient Empfänger oder null
+     */
+    public Message(Action action, String user, String content, String recipient) {
+        this(action, user, content, recipient, 0, null, null);
+    }
+
+    /**
+     * Konstruktor für Nachrichten ohne Teilstück
+     * @param action Aktion
+     * @param user Absender
+     * @param content Inhalt
+     * @param recipient Empfänger oder null
+     * @param seq Sequenznummer
+     */
+    public Message(Action action, String user, String content, String recipient, long seq) {
+        this(action, user, content, recipient, seq, null, null);
+    }
+
+    /**
+     * Konstruktor für Nachrichten ohne Zeitstempel
+     * @param action Aktion
+     * @param user Absender
+     * @param content Inhalt
+     * @param recipient Empfänger oder null
+     * @param seq Sequenznummer
+     * @param chunk Teilstück oder null
+     */
+    public Message(Action action, String user, String content, String recipient, long seq, Chunk chunk) {
+        this(action, user, content, recipient, seq, chunk, null);
+    }
+
+    /**
+     * Kopie der Nachricht mit neuer Sequenznummer
+     * @param seq Sequenznummer
+     * @return neue Nachricht
+     */
+    public Message withSeq(long seq) {
+        return new Message(action, user, content, recipient, seq, chunk, timing);
+    }
+
+    /**
+     * Kopie der Nachricht mit anderen Zeitstempeln
+     * @param timing Zeitstempel oder null
+     * @return neue Nachricht
+     */
+    public Message withTiming(Timing timing) {
+        return new Message(action, user, content, recipient, seq, chunk, timing);
     }
 /*
     public class MessageEncoder {
@@ -26,4 +173,4 @@ public record Message(
             return jsonString;
         }
     }*/
-}
\ No newline at end of file
+}
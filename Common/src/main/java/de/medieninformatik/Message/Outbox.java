@@ -0,0 +1,140 @@
+package de.medieninformatik.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Sende-Warteschlange mit zwei Spuren: normale Nachrichten und
+ * CHUNK-Teilstücke. Sind beide Spuren belegt, wird abwechselnd entnommen,
+ * so dass kleine Chat-Nachrichten nie hinter einer großen Übertragung
+ * warten müssen.
+ * Beide Spuren sind begrenzt, damit ein langsamer Empfänger keinen
+ * unbegrenzten Speicher belegt. Ist die Spur für Teilstücke voll, wird
+ * nur das Teilstück abgelehnt; ist die normale Spur voll, liest der
+ * Empfänger offenbar nicht mehr, und der Aufrufer sollte ihn trennen.
+ * @param <T> Message oder eine bereits kodierte Form davon
+ */
+public class Outbox<T> {
+    private final Deque<T> normal;
+    private final Deque<T> bulk;
+    private final int normalCapacity;
+    private final int bulkCapacity;
+    private final Predicate<? super T> isBulk;
+    private boolean bulkTurn;
+    private boolean closed;
+
+    /**
+     * Warteschlange für Nachrichten: CHUNK-Teilstücke kommen in die eigene Spur
+     * @param normalCapacity maximale Anzahl wartender normaler Nachrichten
+     * @param bulkCapacity maximale Anzahl wartender Teilstücke
+     * @return die Warteschlange
+     */
+    public static Outbox<Message> forMessages(int normalCapacity, int bulkCapacity) {
+        return new Outbox<>(normalCapacity, bulkCapacity, msg -> msg.action() == Message.Action.CHUNK);
+    }
+
+    /**
+     * Konstruktor
+     * @param normalCapacity maximale Anzahl wartender normaler Nachrichten
+     * @param bulkCapacity maximale Anzahl wartender Teilstücke
+     * @param isBulk entscheidet, ob ein Element in die Spur für Teilstücke gehört
+     */
+    public Outbox(int normalCapacity, int bulkCapacity, Predicate<? super T> isBulk) {
+        this.normal = new ArrayDeque<>();
+        this.bulk = new ArrayDeque<>();
+        this.normalCapacity = normalCapacity;
+        this.bulkCapacity = bulkCapacity;
+        this.isBulk = isBulk;
+        this.bulkTurn = false;
+        this.closed = false;
+    }
+
+    /**
+     * Stellt eine Nachricht in die passende Spur
+     * @param msg Nachricht
+     * @return false falls geschlossen oder die Spur voll ist
+     */
+    public synchronized boolean offer(T msg) {
+        if(closed) return false;
+        if(isBulk.test(msg)) {
+            if(bulk.size() >= bulkCapacity) return false;
+            bulk.addLast(msg);
+        } else {
+            if(normal.size() >= normalCapacity) return false;
+            normal.addLast(msg);
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Entnimmt die nächste Nachricht, blockiert solange beide Spuren leer sind
+     * @return Nachricht, null falls geschlossen und leer
+     * @throws InterruptedException
+     */
+    public synchronized T take() throws InterruptedException {
+        while(normal.isEmpty() && bulk.isEmpty() && !closed) wait();
+        return poll();
+    }
+
+    /**
+     * Entnimmt die nächste Nachricht ohne zu warten
+     * @return Nachricht, null falls beide Spuren leer sind
+     */
+    public synchronized T poll() {
+        if(normal.isEmpty() && bulk.isEmpty()) return null;
+        if(bulk.isEmpty() || (!normal.isEmpty() && !bulkTurn)) {
+            bulkTurn = true;
+            return normal.pollFirst();
+        }
+        bulkTurn = false;
+        return bulk.pollFirst();
+    }
+
+    /**
+     * @return true falls keine Nachricht wartet
+     */
+    public synchronized boolean isEmpty() {
+        return normal.isEmpty() && bulk.isEmpty();
+    }
+
+    /**
+     * @return true nach close()
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Verwirft alle wartenden Nachrichten
+     */
+    public synchronized void clear() {
+        normal.clear();
+        bulk.clear();
+    }
+
+    /**
+     * Entnimmt alle wartenden Nachrichten, z.B. um ihre Puffer freizugeben
+     * @return die Nachrichten beider Spuren
+     */
+    public synchronized List<T> drain() {
+        List<T> all = new ArrayList<>(normal.size() + bulk.size());
+        all.addAll(normal);
+        all.addAll(bulk);
+        normal.clear();
+        bulk.clear();
+        return all;
+    }
+
+    /**
+     * Schließt die Warteschlange. Bereits wartende Nachrichten
+     * können noch entnommen werden, danach liefert take() null.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+}
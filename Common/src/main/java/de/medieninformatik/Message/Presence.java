@@ -0,0 +1,100 @@
+package de.medieninformatik.Message;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Kodierung der PRESENCE-Nachrichten (wer ist angemeldet).
+ * Der Inhalt besteht aus Zeilen mit je einem Nutzernamen und einem
+ * Präfix: '=' für eine vollständige Liste (Snapshot), '+' für neu
+ * angemeldete und '-' für abgemeldete Nutzer (Delta).
+ * Snapshot und Delta lassen sich beliebig oft anwenden (Mengen-Operationen),
+ * eine Überschneidung von Snapshot und Delta schadet daher nicht.
+ * Ein Nutzername darf deshalb keinen Zeilenumbruch enthalten, und er darf
+ * nicht wie der Server heißen, siehe {@link #isValidName(String)}.
+ */
+public final class Presence {
+    private static final char SNAPSHOT = '=';
+    private static final char JOINED = '+';
+    private static final char LEFT = '-';
+
+    /**
+     * Dekodierte PRESENCE-Nachricht
+     * @param snapshot true falls joined die vollständige Liste ist
+     * @param joined angemeldete Nutzer
+     * @param left abgemeldete Nutzer
+     */
+    public record Change(boolean snapshot, List<String> joined, List<String> left) {
+    }
+
+    private Presence() {
+    }
+
+    /**
+     * @param user Nutzername
+     * @return true falls der Name nicht leer ist, keinen Zeilenumbruch enthält
+     *  und nicht {@link Message#SERVER} ist (auch nicht in anderer Schreibweise),
+     *  mit dem sich ein Nutzer als Server ausgeben könnte
+     */
+    public static boolean isValidName(String user) {
+        return user != null && !user.isEmpty() && user.indexOf('\n') < 0
+                && !user.equalsIgnoreCase(Message.SERVER);
+    }
+
+    /**
+     * @param users alle angemeldeten Nutzer
+     * @return Snapshot-Nachricht
+     * @throws IllegalArgumentException bei einem ungültigen Nutzernamen
+     */
+    public static Message snapshot(Collection<String> users) {
+        StringBuilder sb = new StringBuilder();
+        for(String user : users) line(sb, SNAPSHOT, user);
+        return new Message(Message.Action.PRESENCE, Message.SERVER, sb.toString());
+    }
+
+    /**
+     * @param joined seit dem letzten Delta angemeldete Nutzer
+     * @param left seit dem letzten Delta abgemeldete Nutzer
+     * @return Delta-Nachricht
+     * @throws IllegalArgumentException bei einem ungültigen Nutzernamen
+     */
+    public static Message delta(Collection<String> joined, Collection<String> left) {
+        StringBuilder sb = new StringBuilder();
+        for(String user : joined) line(sb, JOINED, user);
+        for(String user : left) line(sb, LEFT, user);
+        return new Message(Message.Action.PRESENCE, Message.SERVER, sb.toString());
+    }
+
+    private static void line(StringBuilder sb, char prefix, String user) {
+        if(!isValidName(user))
+            throw new IllegalArgumentException("Ungültiger Nutzername: " + user);
+        sb.append(prefix).append(user).append('\n');
+    }
+
+    /**
+     * @param msg PRESENCE-Nachricht
+     * @return die enthaltenen Änderungen
+     */
+    public static Change decode(Message msg) {
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        boolean snapshot = false;
+        if(msg.content() != null) {
+            for(String line : msg.content().split("\n")) {
+                if(line.isEmpty()) continue;
+                String user = line.substring(1);
+                switch(line.charAt(0)) {
+                    case SNAPSHOT -> {
+                        snapshot = true;
+                        joined.add(user);
+                    }
+                    case JOINED -> joined.add(user);
+                    case LEFT -> left.add(user);
+                    default -> { } // unbekannt: ignorieren
+                }
+            }
+        }
+        return new Change(snapshot, joined, left);
+    }
+}
@@ -0,0 +1,19 @@
+package de.medieninformatik.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Serverseite eines Transports: nimmt neue Verbindungen entgegen.
+ */
+public interface Acceptor extends Closeable {
+
+    /**
+     * Wartet auf die nächste Verbindung
+     * @return die neue Verbindung
+     * @throws java.nio.channels.ClosedChannelException falls der Acceptor
+     *  geschlossen wurde (auch während des Wartens)
+     * @throws IOException
+     */
+    Transport accept() throws IOException;
+}
@@ -0,0 +1,138 @@
+package de.medieninformatik.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+
+/**
+ * Begrenzter Ringpuffer für Bytes mit einem schreibenden und einem
+ * lesenden Ende. Ist der Puffer voll, blockiert der Schreiber; ist er
+ * leer, blockiert der Leser (wie bei einem Socket).
+ */
+class BytePipe {
+    private final byte[] buffer;
+    private int head;  // nächste zu lesende Position
+    private int count; // belegte Bytes
+    private boolean writerClosed;
+    private boolean readerClosed;
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * Konstruktor
+     * @param capacity Puffergröße in Bytes
+     */
+    BytePipe(int capacity) {
+        this.buffer = new byte[capacity];
+        this.in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return BytePipe.this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return BytePipe.this.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                return BytePipe.this.available();
+            }
+
+            @Override
+            public void close() {
+                closeReader();
+            }
+        };
+        this.out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                BytePipe.this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                BytePipe.this.write(b, off, len);
+            }
+
+            @Override
+            public void close() {
+                closeWriter();
+            }
+        };
+    }
+
+    InputStream getInputStream() {
+        return in;
+    }
+
+    OutputStream getOutputStream() {
+        return out;
+    }
+
+    private synchronized int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) return 0;
+        while(count == 0) {
+            if(readerClosed) throw new IOException("Pipe geschlossen");
+            if(writerClosed) return -1; // EOF
+            await();
+        }
+        int n = Math.min(len, count);
+        int first = Math.min(n, buffer.length - head);
+        System.arraycopy(buffer, head, b, off, first);
+        System.arraycopy(buffer, 0, b, off + first, n - first);
+        head = (head + n) % buffer.length;
+        count -= n;
+        notifyAll();
+        return n;
+    }
+
+    private synchronized void write(byte[] b, int off, int len) throws IOException {
+        while(len > 0) {
+            while(count == buffer.length && !readerClosed && !writerClosed) await();
+            if(readerClosed || writerClosed) throw new IOException("Pipe geschlossen");
+            int tail = (head + count) % buffer.length;
+            int n = Math.min(len, buffer.length - count);
+            int first = Math.min(n, buffer.length - tail);
+            System.arraycopy(b, off, buffer, tail, first);
+            System.arraycopy(b, off + first, buffer, 0, n - first);
+            count += n;
+            off += n;
+            len -= n;
+            notifyAll();
+        }
+    }
+
+    private synchronized int available() {
+        return count;
+    }
+
+    /**
+     * Schreibendes Ende schließen: der Leser liest noch den Rest, dann EOF
+     */
+    synchronized void closeWriter() {
+        writerClosed = true;
+        notifyAll();
+    }
+
+    /**
+     * Lesendes Ende schließen: weitere Schreibversuche schlagen fehl
+     */
+    synchronized void closeReader() {
+        readerClosed = true;
+        count = 0;
+        notifyAll();
+    }
+
+    private void await() throws InterruptedIOException {
+        try {
+            wait();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package de.medieninformatik.transport;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Transport über einen blockierenden SocketChannel (TCP oder Unix-Domain).
+ *
+ * Die Ströme von Channels.newInputStream/newOutputStream halten beim
+ * Lesen die Blocking-Sperre des Kanals, ein gleichzeitiges Schreiben aus
+ * einem anderen Thread würde dann warten. Deshalb werden hier eigene
+ * Adapter benutzt, die direkt read/write des Kanals aufrufen.
+ */
+public class ChannelTransport implements Transport {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final SocketChannel channel;
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * Konstruktor
+     * @param channel verbundener, blockierender Kanal
+     */
+    public ChannelTransport(SocketChannel channel) {
+        this.channel = channel;
+        this.in = new BufferedInputStream(new ChannelInput(channel), BUFFER_SIZE);
+        this.out = new BufferedOutputStream(new ChannelOutput(channel), BUFFER_SIZE);
+    }
+
+    /**
+     * Verbindet sich mit der Adresse; bei TCP wird TCP_NODELAY gesetzt
+     * @param address TCP- oder Unix-Domain-Adresse
+     * @return die Verbindung
+     * @throws IOException
+     */
+    static ChannelTransport connect(SocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        if(address instanceof InetSocketAddress) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+        return new ChannelTransport(channel);
+    }
+
+    /**
+     * @return der Kanal, z.B. um Socket-Optionen zu setzen
+     */
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Schreibt die Puffer mit einem Gathering-Write direkt in den Kanal,
+     * ohne sie in den Heap zu kopieren
+     * @param buffers Daten in Reihenfolge
+     * @throws IOException
+     */
+    @Override
+    public void write(ByteBuffer... buffers) throws IOException {
+        out.flush();
+        long remaining = 0;
+        for(ByteBuffer buffer : buffers) remaining += buffer.remaining();
+        while(remaining > 0) remaining -= channel.write(buffers);
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        out.flush();
+        channel.shutdownOutput();
+    }
+
+    /**
+     * Schaltet den Kanal dafür in den nicht-blockierenden Modus, die
+     * Ströme sind danach nicht mehr benutzbar
+     */
+    @Override
+    public synchronized boolean discardInput() throws IOException {
+        if(channel.isBlocking()) channel.configureBlocking(false);
+        ByteBuffer scratch = ByteBuffer.allocate(512);
+        int n;
+        while((n = channel.read(scratch)) > 0) scratch.clear();
+        return n < 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return "ChannelTransport[" + channel.getRemoteAddress() + "]";
+        } catch(IOException e) {
+            return "ChannelTransport[geschlossen]";
+        }
+    }
+
+    /**
+     * Eingabestrom direkt auf dem Kanal
+     */
+    private static class ChannelInput extends InputStream {
+        private final SocketChannel channel;
+
+        ChannelInput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(len == 0) return 0;
+            return channel.read(ByteBuffer.wrap(b, off, len));
+        }
+    }
+
+    /**
+     * Ausgabestrom direkt auf dem Kanal
+     */
+    private static class ChannelOutput extends OutputStream {
+        private final SocketChannel channel;
+
+        ChannelOutput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while(buffer.hasRemaining()) channel.write(buffer);
+        }
+    }
+}
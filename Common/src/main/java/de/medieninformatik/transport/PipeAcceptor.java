@@ -0,0 +1,69 @@
+package de.medieninformatik.transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Acceptor für Verbindungen im Speicher. Clients rufen {@link #connect()}
+ * auf und bekommen ihr Ende, der Server bekommt das andere über accept().
+ */
+public class PipeAcceptor implements Acceptor {
+    private static final PipeTransport CLOSED = PipeTransport.pair(1)[0]; // Endmarke
+
+    private final BlockingQueue<PipeTransport> pending;
+    private final int capacity;
+    private volatile boolean closed;
+
+    /**
+     * Konstruktor mit Standard-Puffergröße
+     */
+    public PipeAcceptor() {
+        this(PipeTransport.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Konstruktor
+     * @param capacity Puffergröße je Richtung und Verbindung
+     */
+    public PipeAcceptor(int capacity) {
+        this.pending = new LinkedBlockingQueue<>();
+        this.capacity = capacity;
+        this.closed = false;
+    }
+
+    /**
+     * Baut eine neue Verbindung auf
+     * @return Client-Ende der Verbindung
+     * @throws IOException falls der Acceptor geschlossen ist
+     */
+    public Transport connect() throws IOException {
+        if(closed) throw new ClosedChannelException();
+        PipeTransport[] ends = PipeTransport.pair(capacity);
+        pending.add(ends[1]);
+        return ends[0];
+    }
+
+    @Override
+    public Transport accept() throws IOException {
+        try {
+            PipeTransport t = pending.take();
+            if(t == CLOSED) {
+                pending.add(CLOSED); // für weitere wartende accept-Aufrufe
+                throw new ClosedChannelException();
+            }
+            return t;
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pending.add(CLOSED);
+    }
+}
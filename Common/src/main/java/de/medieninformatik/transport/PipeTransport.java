@@ -0,0 +1,61 @@
+package de.medieninformatik.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Transport im Speicher: zwei über BytePipes verbundene Enden.
+ * Damit laufen Tausende simulierte Clients mit dem echten Protokoll-Code
+ * in einem Prozess, ohne Sockets oder Ports (Tests, Lasttests).
+ */
+public class PipeTransport implements Transport {
+    /**
+     * Standard-Puffergröße je Richtung
+     */
+    public static final int DEFAULT_CAPACITY = 16 * 1024;
+
+    private final BytePipe incoming;
+    private final BytePipe outgoing;
+
+    private PipeTransport(BytePipe incoming, BytePipe outgoing) {
+        this.incoming = incoming;
+        this.outgoing = outgoing;
+    }
+
+    /**
+     * Erzeugt zwei verbundene Enden
+     * @param capacity Puffergröße je Richtung in Bytes
+     * @return [0] und [1]: was an einem Ende geschrieben wird, liest das andere
+     */
+    public static PipeTransport[] pair(int capacity) {
+        BytePipe a = new BytePipe(capacity);
+        BytePipe b = new BytePipe(capacity);
+        return new PipeTransport[]{new PipeTransport(a, b), new PipeTransport(b, a)};
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return incoming.getInputStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return outgoing.getOutputStream();
+    }
+
+    @Override
+    public void shutdownOutput() {
+        outgoing.closeWriter();
+    }
+
+    /**
+     * Schließt beide Richtungen: die Gegenseite liest EOF
+     * und kann nicht mehr schreiben
+     */
+    @Override
+    public void close() {
+        outgoing.closeWriter();
+        incoming.closeReader();
+    }
+}
@@ -0,0 +1,99 @@
+package de.medieninformatik.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Bidirektionale Byte-Verbindung zwischen Client und Server.
+ * Das Chat-Protokoll (Objektströme mit Message) arbeitet nur mit den
+ * Strömen und weiß nicht, ob darunter TCP, ein Unix-Domain-Socket oder
+ * eine Verbindung im Speicher liegt.
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * @return Eingabestrom, bei jedem Aufruf derselbe
+     * @throws IOException
+     */
+    InputStream getInputStream() throws IOException;
+
+    /**
+     * @return Ausgabestrom (gepuffert, flush nötig), bei jedem Aufruf derselbe
+     * @throws IOException
+     */
+    OutputStream getOutputStream() throws IOException;
+
+    /**
+     * Schreibt bereits kodierte Daten, z.B. aus einem Pool von Direct
+     * Buffers. Gepufferte Daten aus getOutputStream() gehen vorher raus.
+     * Die Puffer werden nur gelesen (position wandert), ihr Inhalt bleibt.
+     * Ohne eigenen Kanal wird über den Ausgabestrom kopiert.
+     * @param buffers Daten in Reihenfolge
+     * @throws IOException
+     */
+    default void write(ByteBuffer... buffers) throws IOException {
+        OutputStream out = getOutputStream();
+        byte[] copy = null;
+        for(ByteBuffer buffer : buffers) {
+            if(buffer.hasArray()) {
+                out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+                continue;
+            }
+            if(copy == null) copy = new byte[Math.min(8 * 1024, buffer.remaining())];
+            while(buffer.hasRemaining()) {
+                int n = Math.min(copy.length, buffer.remaining());
+                buffer.get(copy, 0, n);
+                out.write(copy, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Beendet die Senderichtung, die Gegenseite liest danach EOF
+     * @throws IOException
+     */
+    void shutdownOutput() throws IOException;
+
+    /**
+     * Verwirft ohne zu blockieren, was die Gegenseite bereits geschickt hat.
+     * Gedacht für eine Verbindung, deren Eingang nie gelesen wird: liegen
+     * beim Schließen noch ungelesene Daten im Empfangspuffer, sendet TCP
+     * ein RST, und die Gegenseite verliert womöglich noch nicht gelesene
+     * Daten. Ohne Socket geht beim Schließen nichts verloren.
+     * @return true falls die Gegenseite nichts mehr schicken kann (EOF)
+     *  und die Verbindung geschlossen werden darf
+     * @throws IOException
+     */
+    default boolean discardInput() throws IOException {
+        return true;
+    }
+
+    /**
+     * Verbindet sich über TCP
+     * @param host Rechnername
+     * @param port Port
+     * @return die Verbindung
+     * @throws IOException falls der Server nicht erreichbar ist
+     */
+    static Transport tcp(String host, int port) throws IOException {
+        return ChannelTransport.connect(new InetSocketAddress(host, port));
+    }
+
+    /**
+     * Verbindet sich über einen Unix-Domain-Socket (nur auf demselben Rechner,
+     * weniger Overhead als TCP über loopback)
+     * @param path Pfad der Socket-Datei
+     * @return die Verbindung
+     * @throws IOException falls der Server nicht erreichbar ist
+     */
+    static Transport unix(Path path) throws IOException {
+        return ChannelTransport.connect(UnixDomainSocketAddress.of(path));
+    }
+}
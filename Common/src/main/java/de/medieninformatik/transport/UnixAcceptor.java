@@ -0,0 +1,82 @@
+package de.medieninformatik.transport;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Nimmt Verbindungen über einen Unix-Domain-Socket entgegen,
+ * z.B. von Bots oder Clients auf demselben Rechner.
+ */
+public class UnixAcceptor implements Acceptor {
+    private final Path path;
+    private final ServerSocketChannel server;
+
+    /**
+     * Konstruktor, legt die Socket-Datei an. Eine verwaiste Socket-Datei
+     * (z.B. nach einem Absturz) wird vorher gelöscht.
+     * @param path Pfad der Socket-Datei
+     * @param backlog Länge der Warteschlange für neue Verbindungen
+     * @throws FileAlreadyExistsException falls unter dem Pfad etwas anderes
+     *  als eine Socket-Datei liegt
+     * @throws BindException falls noch ein Server an dem Socket lauscht
+     * @throws IOException
+     */
+    public UnixAcceptor(Path path, int backlog) throws IOException {
+        this.path = path;
+        deleteStale(path);
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path), backlog);
+    }
+
+    /**
+     * Löscht eine Socket-Datei nur, wenn niemand mehr an ihr lauscht.
+     * Reguläre Dateien, Verzeichnisse und Links bleiben unangetastet.
+     * @param path Pfad der Socket-Datei
+     * @throws IOException falls der Pfad belegt ist
+     */
+    private static void deleteStale(Path path) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch(NoSuchFileException e) {
+            return;
+        }
+        if(!attrs.isOther()) // Sockets zählen zu "other"
+            throw new FileAlreadyExistsException(path.toString(), null, "keine Socket-Datei");
+        try(SocketChannel probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(UnixDomainSocketAddress.of(path));
+            throw new BindException("Socket wird noch verwendet: " + path);
+        } catch(ConnectException e) {
+            Files.deleteIfExists(path); // Verbindung abgelehnt: verwaist
+        }
+    }
+
+    @Override
+    public Transport accept() throws IOException {
+        return new ChannelTransport(server.accept());
+    }
+
+    /**
+     * Schließt den Socket und löscht die Socket-Datei
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            server.close();
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package de.medieninformatik.web;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Statische Dateien der Web-App (news.html usw.) aus dem Speicher.
+ * Beim Start werden alle Dateien der Docbase einmal gelesen, mit gzip
+ * komprimiert und mit einem starken ETag versehen. Ein Aufruf kostet danach
+ * nur noch eine Map-Abfrage und das Schreiben eines fertigen Byte-Arrays;
+ * fragt der Browser mit If-None-Match bzw. If-Modified-Since nach,
+ * gibt es 304 ohne Inhalt.
+ *
+ * Wird von Server und TCServer verwendet. Das Servlet wird im jeweiligen
+ * Main auf genau die geladenen Pfade gemappt (paths()),
+ * alles andere (neue Dateien, Verzeichnisse, JSPs) bleibt beim
+ * Default-Servlet von Tomcat. Änderungen an den Dateien werden erst nach
+ * einem Neustart sichtbar.
+ */
+public class StaticAssetServlet extends HttpServlet {
+    /**
+     * Größere Dateien bleiben beim Default-Servlet
+     */
+    private static final long MAX_SIZE = 1 << 20;
+
+    /**
+     * Ein Tag. news.html hat keinen Hash im Namen, nach einer Änderung
+     * sollen Browser sie also bald wieder nachfragen; das ist dank ETag
+     * ein 304 ohne Inhalt.
+     */
+    private static final String CACHE_CONTROL = "public, max-age=86400";
+
+    private static final Map<String, String> TYPES = Map.of(
+            "html", "text/html;charset=UTF-8",
+            "css", "text/css;charset=UTF-8",
+            "js", "text/javascript;charset=UTF-8",
+            "json", "application/json",
+            "txt", "text/plain;charset=UTF-8",
+            "svg", "image/svg+xml",
+            "png", "image/png",
+            "jpg", "image/jpeg",
+            "gif", "image/gif",
+            "ico", "image/x-icon");
+
+    /**
+     * Eine Datei in beiden Darstellungen
+     * @param type Content-Type
+     * @param lastModified Änderungszeit in ms, auf Sekunden abgerundet wie im HTTP-Header
+     * @param plain Inhalt
+     * @param etag ETag von plain, mit Anführungszeichen
+     * @param gzip komprimierter Inhalt oder null, falls das nichts spart
+     * @param gzipEtag ETag von gzip
+     */
+    private record Asset(String type, long lastModified, byte[] plain, String etag,
+                         byte[] gzip, String gzipEtag) {}
+
+    private final transient Map<String, Asset> assets;
+
+    /**
+     * Konstruktor, lädt und komprimiert alle Dateien unterhalb der Docbase
+     * @param docBase Verzeichnis der Web-App
+     * @throws IOException falls die Docbase nicht gelesen werden kann
+     */
+    public StaticAssetServlet(Path docBase) throws IOException {
+        Map<String, Asset> map = new HashMap<>();
+        try(Stream<Path> files = Files.walk(docBase)) {
+            files.filter(Files::isRegularFile).forEach(file -> {
+                try {
+                    if(Files.size(file) > MAX_SIZE) return;
+                    String path = "/" + docBase.relativize(file).toString().replace('\\', '/');
+                    if(path.startsWith("/WEB-INF/") || path.startsWith("/META-INF/")) return;
+                    if(path.endsWith(".jsp") || path.endsWith(".jspx")) return; // übersetzt Jasper
+                    map.put(path, load(file));
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch(UncheckedIOException e) {
+            throw e.getCause();
+        }
+        this.assets = Map.copyOf(map);
+    }
+
+    /**
+     * @return Pfade relativ zum Kontext, z.B. /news.html, für das Servlet-Mapping
+     */
+    public Set<String> paths() {
+        return Collections.unmodifiableSet(assets.keySet());
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        Asset asset = assets.get(req.getServletPath());
+        if(asset == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        boolean gzip = asset.gzip() != null && acceptsGzip(req.getHeader("Accept-Encoding"));
+        String etag = gzip ? asset.gzipEtag() : asset.etag();
+
+        resp.setHeader("ETag", etag);
+        resp.setHeader("Cache-Control", CACHE_CONTROL);
+        resp.setDateHeader("Last-Modified", asset.lastModified());
+        if(asset.gzip() != null) resp.setHeader("Vary", "Accept-Encoding");
+        if(notModified(req, etag, asset.lastModified())) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = gzip ? asset.gzip() : asset.plain();
+        resp.setContentType(asset.type());
+        if(gzip) resp.setHeader("Content-Encoding", "gzip");
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    /**
+     * Bedingte Anfrage nach RFC 9110: If-None-Match hat Vorrang,
+     * If-Modified-Since zählt nur ohne If-None-Match
+     * @param req Request
+     * @param etag ETag der gewählten Darstellung
+     * @param lastModified Änderungszeit in ms
+     * @return true, falls der Browser die Datei schon hat
+     */
+    private static boolean notModified(HttpServletRequest req, String etag, long lastModified) {
+        String ifNoneMatch = req.getHeader("If-None-Match");
+        if(ifNoneMatch != null) {
+            for(String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if(tag.startsWith("W/")) tag = tag.substring(2); // schwacher Vergleich
+                if(tag.equals("*") || tag.equals(etag)) return true;
+            }
+            return false;
+        }
+        try {
+            long since = req.getDateHeader("If-Modified-Since");
+            return since >= 0 && lastModified <= since;
+        } catch(IllegalArgumentException e) {
+            return false; // unlesbares Datum: wie ohne Header
+        }
+    }
+
+    /**
+     * @param acceptEncoding Header Accept-Encoding oder null
+     * @return true, falls gzip (oder *) ohne q=0 aufgeführt ist
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if(acceptEncoding == null) return false;
+        for(String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if(!name.equalsIgnoreCase("gzip") && !name.equals("*")) continue;
+            for(int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if(param.startsWith("q=") && param.substring(2).matches("0(\\.0*)?")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Liest eine Datei und bereitet beide Darstellungen vor
+     * @param file Datei
+     * @return Asset
+     * @throws IOException
+     */
+    private static Asset load(Path file) throws IOException {
+        byte[] plain = Files.readAllBytes(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis() / 1000 * 1000;
+        String name = file.getFileName().toString();
+        String ext = name.substring(name.lastIndexOf('.') + 1).toLowerCase();
+        String type = TYPES.getOrDefault(ext, "application/octet-stream");
+
+        byte[] gzip = gzip(plain);
+        // Bilder sind meist schon komprimiert; unter 10 % Ersparnis lohnt das Auspacken nicht
+        if(gzip.length > plain.length * 0.9) gzip = null;
+        String tag = hash(plain);
+        return new Asset(type, lastModified, plain, "\"" + tag + "\"",
+                gzip, gzip != null ? "\"" + tag + "-gz\"" : null);
+    }
+
+    /**
+     * @param data Inhalt
+     * @return gzip mit höchster Kompressionsstufe, das kostet nur einmal beim Start
+     * @throws IOException
+     */
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 32);
+        try(GZIPOutputStream out = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param data Inhalt
+     * @return die ersten 128 Bit von SHA-256, Base64 ohne Auffüllung
+     */
+    private static String hash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+        } catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 gibt es in jeder JVM
+        }
+    }
+}
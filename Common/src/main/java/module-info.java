@@ -6,4 +6,6 @@ module Prog3_8_3_TomcatMessages.Message.main {
     requires java.desktop;
     requires java.instrument; // wichtig für Reflection von tomcat
     exports de.medieninformatik.Message;
+    exports de.medieninformatik.transport;
+    exports de.medieninformatik.web;
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package de.medieninformatik.Message;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkAssemblerTest {
+
+    @Test
+    void reassemblesSplitContent() {
+        String text = "x".repeat(25);
+        List<Message> chunks = Chunks.split("a", text, "b", 7, 10);
+        assertEquals(3, chunks.size());
+
+        ChunkAssembler assembler = new ChunkAssembler(100);
+        assertNull(assembler.accept(chunks.get(0)));
+        assertNull(assembler.accept(chunks.get(1)));
+        Message whole = assembler.accept(chunks.get(2));
+
+        assertEquals(Message.Action.PRIVATE, whole.action());
+        assertEquals(text, whole.content());
+        assertEquals("b", whole.recipient());
+    }
+
+    @Test
+    void doesNotSplitSurrogatePairs() {
+        String text = "abc😀def"; // Emoji an Position 3-4
+        for(Message m : Chunks.split("a", text, null, 1, 4)) {
+            assertFalse(Character.isHighSurrogate(m.content().charAt(m.content().length() - 1)));
+        }
+    }
+
+    @Test
+    void dropsTransferWithGap() {
+        List<Message> chunks = Chunks.split("a", "x".repeat(30), null, 1, 10);
+        ChunkAssembler assembler = new ChunkAssembler(100);
+        assembler.accept(chunks.get(0));
+        assertNull(assembler.accept(chunks.get(2)));
+        assertNull(assembler.accept(chunks.get(1)), "Übertragung nach Lücke verworfen");
+    }
+
+    @Test
+    void dropsTransferOverMaxSize() {
+        List<Message> chunks = Chunks.split("a", "x".repeat(30), null, 1, 10);
+        ChunkAssembler assembler = new ChunkAssembler(15);
+        assembler.accept(chunks.get(0));
+        assertNull(assembler.accept(chunks.get(1)));
+        assertNull(assembler.accept(chunks.get(2)));
+    }
+
+    @Test
+    void utf8LengthMatchesEncoder() {
+        String text = "aä€😀";
+        assertEquals(text.getBytes(java.nio.charset.StandardCharsets.UTF_8).length, Chunks.utf8Length(text));
+    }
+}
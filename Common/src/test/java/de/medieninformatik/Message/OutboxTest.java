@@ -0,0 +1,77 @@
+package de.medieninformatik.Message;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxTest {
+
+    private static Message send(String text) {
+        return new Message(Message.Action.SEND, "a", text);
+    }
+
+    private static Message chunk(int index) {
+        return new Message(Message.Action.CHUNK, "a", "c" + index, null, 0,
+                new Message.Chunk(1, index, 10));
+    }
+
+    @Test
+    void alternatesBetweenLanes() {
+        Outbox<Message> outbox = Outbox.forMessages(10, 10);
+        outbox.offer(chunk(0));
+        outbox.offer(chunk(1));
+        outbox.offer(send("x"));
+        outbox.offer(send("y"));
+
+        assertEquals("x", outbox.poll().content());
+        assertEquals("c0", outbox.poll().content());
+        assertEquals("y", outbox.poll().content());
+        assertEquals("c1", outbox.poll().content());
+        assertNull(outbox.poll());
+    }
+
+    @Test
+    void normalLaneIsBounded() {
+        Outbox<Message> outbox = Outbox.forMessages(2, 10);
+        assertTrue(outbox.offer(send("1")));
+        assertTrue(outbox.offer(send("2")));
+        assertFalse(outbox.offer(send("3")));
+        assertTrue(outbox.offer(chunk(0)), "Teilstücke haben eine eigene Grenze");
+
+        outbox.poll();
+        assertTrue(outbox.offer(send("3")));
+    }
+
+    @Test
+    void bulkLaneIsBounded() {
+        Outbox<Message> outbox = Outbox.forMessages(10, 1);
+        assertTrue(outbox.offer(chunk(0)));
+        assertFalse(outbox.offer(chunk(1)));
+        assertTrue(outbox.offer(send("x")));
+    }
+
+    @Test
+    void closeKeepsQueuedMessages() throws InterruptedException {
+        Outbox<Message> outbox = Outbox.forMessages(10, 10);
+        outbox.offer(send("x"));
+        outbox.close();
+
+        assertTrue(outbox.isClosed());
+        assertFalse(outbox.offer(send("y")));
+        assertEquals("x", outbox.take().content());
+        assertNull(outbox.take());
+    }
+
+    @Test
+    void drainEmptiesBothLanes() {
+        Outbox<Message> outbox = Outbox.forMessages(10, 10);
+        outbox.offer(send("x"));
+        outbox.offer(chunk(0));
+
+        List<Message> all = outbox.drain();
+        assertEquals(2, all.size());
+        assertTrue(outbox.isEmpty());
+    }
+}
@@ -0,0 +1,40 @@
+package de.medieninformatik.Message;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceTest {
+
+    @Test
+    void snapshotRoundTrip() {
+        Presence.Change change = Presence.decode(Presence.snapshot(List.of("anna", "ben b")));
+        assertTrue(change.snapshot());
+        assertEquals(List.of("anna", "ben b"), change.joined());
+        assertTrue(change.left().isEmpty());
+    }
+
+    @Test
+    void deltaRoundTrip() {
+        Presence.Change change = Presence.decode(Presence.delta(List.of("+plus"), List.of("=gleich")));
+        assertFalse(change.snapshot());
+        assertEquals(List.of("+plus"), change.joined());
+        assertEquals(List.of("=gleich"), change.left());
+    }
+
+    @Test
+    void rejectsNamesWithLineBreak() {
+        assertFalse(Presence.isValidName("anna\n+mallory"));
+        assertFalse(Presence.isValidName(""));
+        assertFalse(Presence.isValidName(null));
+        assertTrue(Presence.isValidName("anna"));
+        assertFalse(Presence.isValidName(Message.SERVER));
+        assertFalse(Presence.isValidName("SERVER"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Presence.snapshot(List.of("anna\n=mallory")));
+        assertThrows(IllegalArgumentException.class,
+                () -> Presence.delta(List.of(), List.of("anna\n")));
+    }
+}
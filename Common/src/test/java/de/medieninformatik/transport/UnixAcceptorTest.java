@@ -0,0 +1,69 @@
+package de.medieninformatik.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.BindException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnixAcceptorTest {
+    private Path dir;
+    private Path socket;
+
+    @BeforeEach
+    void createDir() throws IOException {
+        dir = Files.createTempDirectory("chat");
+        socket = dir.resolve("chat.sock");
+    }
+
+    @AfterEach
+    void deleteDir() throws IOException {
+        try(Stream<Path> files = Files.walk(dir)) {
+            for(Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    @Test
+    void replacesStaleSocket() throws IOException {
+        // geschlossen, aber die Datei bleibt liegen wie nach einem Absturz
+        ServerSocketChannel old = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        old.bind(UnixDomainSocketAddress.of(socket));
+        old.close();
+        assertTrue(Files.exists(socket));
+
+        try(UnixAcceptor acceptor = new UnixAcceptor(socket, 1);
+            Transport client = Transport.unix(socket);
+            Transport server = acceptor.accept()) {
+            assertNotNull(server);
+        }
+        assertFalse(Files.exists(socket));
+    }
+
+    @Test
+    void keepsSocketInUse() throws IOException {
+        try(UnixAcceptor first = new UnixAcceptor(socket, 1)) {
+            assertThrows(BindException.class, () -> new UnixAcceptor(socket, 1));
+            try(Transport client = Transport.unix(socket)) { // erster Server erreichbar
+                assertNotNull(first.accept());
+            }
+        }
+    }
+
+    @Test
+    void keepsRegularFile() throws IOException {
+        Files.writeString(socket, "wichtig");
+        assertThrows(FileAlreadyExistsException.class, () -> new UnixAcceptor(socket, 1));
+        assertEquals("wichtig", Files.readString(socket));
+    }
+}
@@ -0,0 +1,53 @@
+package de.medieninformatik.web;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaticAssetServletTest {
+    private Path docBase;
+
+    @BeforeEach
+    void createDocBase() throws IOException {
+        docBase = Files.createTempDirectory("web");
+    }
+
+    @AfterEach
+    void deleteDocBase() throws IOException {
+        try(Stream<Path> files = Files.walk(docBase)) {
+            for(Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    private void write(String path, byte[] content) throws IOException {
+        Path file = docBase.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+    }
+
+    @Test
+    void mapsStaticFilesOnly() throws IOException {
+        write("news.html", "<html></html>".getBytes());
+        write("css/style.css", "body {}".getBytes());
+        write("index.jsp", "<%= 1 %>".getBytes());
+        write("WEB-INF/web.xml", "<web-app/>".getBytes());
+        write("META-INF/context.xml", "<Context/>".getBytes());
+        write("big.bin", new byte[(1 << 20) + 1]);
+
+        assertEquals(Set.of("/news.html", "/css/style.css"), new StaticAssetServlet(docBase).paths());
+    }
+
+    @Test
+    void emptyDocBaseHasNoPaths() throws IOException {
+        assertTrue(new StaticAssetServlet(docBase).paths().isEmpty());
+    }
+}
@@ -0,0 +1,194 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Chunks;
+import de.medieninformatik.Message.Message;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool von Direct Buffers für ausgehende Nachrichten.
+ * Eine Nachricht wird einmal kodiert und als SharedBuffer an alle
+ * Empfänger gegeben, statt für jeden Empfänger in dessen
+ * ObjectOutputStream neu serialisiert zu werden. Die Puffer liegen
+ * außerhalb des Heaps und werden wiederverwendet, der GC sieht davon nichts.
+ *
+ * Größenklassen 512 B, 2 KiB, 8 KiB, 32 KiB; größere Nachrichten bekommen
+ * einen eigenen Puffer, der nicht in den Pool zurückgeht.
+ *
+ * Leck-Erkennung (ein nicht freigegebener SharedBuffer wird eingesammelt)
+ * ist aktiv mit -ea oder -Dchat.buffers.leakDetection=true und meldet die
+ * Stelle, an der der Puffer angelegt wurde.
+ */
+class BufferPool {
+    private static final int MIN_SIZE = 512;
+    private static final int CLASSES = 4; // MIN_SIZE * 4^i
+    private static final int DESCRIPTOR_ESTIMATE = 320; // Klassenbeschreibungen von Message
+
+    private final List<Deque<ByteBuffer>> free;
+    private final AtomicInteger[] pooled;
+    private final int maxPerClass;
+    private final Cleaner cleaner; // null ohne Leck-Erkennung
+    private final AtomicLong leaks = new AtomicLong();
+
+    /**
+     * Konstruktor, Leck-Erkennung nach -ea bzw. Systemeigenschaft
+     * @param maxPerClass maximale Anzahl freier Puffer je Größenklasse
+     */
+    BufferPool(int maxPerClass) {
+        this(maxPerClass, BufferPool.class.desiredAssertionStatus()
+                || Boolean.getBoolean("chat.buffers.leakDetection"));
+    }
+
+    /**
+     * Konstruktor
+     * @param maxPerClass maximale Anzahl freier Puffer je Größenklasse
+     * @param leakDetection true für Leck-Erkennung (kostet einen Stacktrace je Puffer)
+     */
+    BufferPool(int maxPerClass, boolean leakDetection) {
+        this.maxPerClass = maxPerClass;
+        this.free = new ArrayList<>(CLASSES);
+        this.pooled = new AtomicInteger[CLASSES];
+        for(int i = 0; i < CLASSES; i++) {
+            free.add(new ConcurrentLinkedDeque<>());
+            pooled[i] = new AtomicInteger();
+        }
+        this.cleaner = leakDetection ? Cleaner.create() : null;
+    }
+
+    /**
+     * Kodiert eine Nachricht so, wie ObjectOutputStream.writeObject mit
+     * anschließendem reset() sie schreiben würde: TC_RESET, dann das Objekt.
+     * Der Client liest das mit seinem ObjectInputStream wie bisher.
+     * @param msg Nachricht
+     * @return Puffer mit einer Referenz, der Aufrufer muss release() aufrufen
+     */
+    SharedBuffer encode(Message msg) {
+        long estimate = Chunks.utf8Length(msg.content()) + Chunks.utf8Length(msg.user())
+                + Chunks.utf8Length(msg.recipient()) + DESCRIPTOR_ESTIMATE;
+        BufferOutput target = new BufferOutput(acquire((int) Math.min(estimate, Integer.MAX_VALUE)));
+        try(ObjectOutputStream out = new FrameOutputStream(target)) {
+            out.writeObject(msg);
+        } catch(IOException e) {
+            recycle(target.buffer);
+            throw new UncheckedIOException(e);
+        }
+        return new SharedBuffer(this, target.buffer.flip(), cleaner);
+    }
+
+    /**
+     * @return Anzahl erkannter Lecks seit dem Start
+     */
+    long leaks() {
+        return leaks.get();
+    }
+
+    /**
+     * Holt einen Puffer mit mindestens der Größe aus dem Pool
+     * @param size benötigte Größe
+     * @return leerer Puffer
+     */
+    private ByteBuffer acquire(int size) {
+        int c = sizeClass(size);
+        if(c < 0) return ByteBuffer.allocateDirect(size);
+        ByteBuffer buffer = free.get(c).pollFirst();
+        if(buffer == null) return ByteBuffer.allocateDirect(MIN_SIZE << (2 * c));
+        pooled[c].decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Gibt einen Puffer zurück; ist die Klasse voll oder passt die Größe
+     * nicht, wird er dem GC überlassen
+     * @param buffer Puffer
+     */
+    void recycle(ByteBuffer buffer) {
+        int c = sizeClass(buffer.capacity());
+        if(c < 0 || buffer.capacity() != MIN_SIZE << (2 * c)) return;
+        if(pooled[c].incrementAndGet() > maxPerClass) {
+            pooled[c].decrementAndGet();
+            return;
+        }
+        free.get(c).offerFirst(buffer.clear()); // zuletzt benutzt zuerst: noch im Cache
+    }
+
+    /**
+     * Meldet einen SharedBuffer, der ohne release() eingesammelt wurde
+     * @param allocation Stelle, an der er angelegt wurde
+     */
+    void leaked(Throwable allocation) {
+        leaks.incrementAndGet();
+        System.err.println("BufferPool: SharedBuffer ohne release() eingesammelt");
+        if(allocation != null) allocation.printStackTrace();
+    }
+
+    /**
+     * @param size Größe in Bytes
+     * @return Größenklasse oder -1, falls größer als die größte Klasse
+     */
+    private static int sizeClass(int size) {
+        for(int c = 0, s = MIN_SIZE; c < CLASSES; c++, s <<= 2) {
+            if(size <= s) return c;
+        }
+        return -1;
+    }
+
+    /**
+     * Schreibt in einen Direct Buffer, der bei Bedarf durch einen
+     * größeren aus dem Pool ersetzt wird
+     */
+    private final class BufferOutput extends OutputStream {
+        private ByteBuffer buffer;
+
+        BufferOutput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensure(len);
+            buffer.put(b, off, len);
+        }
+
+        private void ensure(int n) {
+            if(buffer.remaining() >= n) return;
+            long needed = (long) buffer.position() + n;
+            ByteBuffer bigger = acquire((int) Math.min(Integer.MAX_VALUE, Math.max(needed, 2L * buffer.capacity())));
+            bigger.put(buffer.flip());
+            recycle(buffer);
+            buffer = bigger;
+        }
+    }
+
+    /**
+     * ObjectOutputStream ohne Stream-Header: statt AC ED 00 05 steht am
+     * Anfang TC_RESET. Damit passt die Nachricht mitten in einen bereits
+     * laufenden Objektstrom und setzt beim Leser die Handle-Tabelle zurück.
+     */
+    private static final class FrameOutputStream extends ObjectOutputStream {
+        FrameOutputStream(OutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void writeStreamHeader() throws IOException {
+            writeByte(TC_RESET);
+        }
+    }
+}
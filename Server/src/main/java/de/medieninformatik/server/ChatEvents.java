@@ -0,0 +1,156 @@
+package de.medieninformatik.server;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java-Flight-Recorder-Ereignisse für Verbindungen und den Nachrichtenversand.
+ * Ist ein Ereignis nicht aktiviert, kostet es praktisch nichts; die Felder
+ * werden erst nach shouldCommit() gefüllt. Aufzeichnen z.B. mit
+ * -XX:StartFlightRecording:settings=chat.jfc,filename=chat.jfr
+ * (chat.jfc liegt im Server-Verzeichnis).
+ */
+final class ChatEvents {
+    private ChatEvents() {}
+
+    @Name("de.medieninformatik.chat.Join")
+    @Label("Chat Join")
+    @Category({"Chat", "Connection"})
+    @Description("Nutzer angemeldet (JOIN oder RESUME)")
+    @StackTrace(false)
+    static class Join extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Resume")
+        boolean resume;
+
+        @Label("Resume Sequence")
+        @Description("letzte beim Client angekommene Sequenznummer, 0 bei JOIN")
+        long resumeSeq;
+
+        @Label("Users Online")
+        int online;
+    }
+
+    @Name("de.medieninformatik.chat.Logout")
+    @Label("Chat Logout")
+    @Category({"Chat", "Connection"})
+    @StackTrace(false)
+    static class Logout extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Users Online")
+        int online;
+    }
+
+    @Name("de.medieninformatik.chat.Receive")
+    @Label("Chat Receive")
+    @Category({"Chat", "Message"})
+    @Description("Bearbeitung einer vom Client empfangenen Nachricht, ohne Wartezeit beim Lesen")
+    @StackTrace(false)
+    @Threshold("5 ms")
+    static class Receive extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Action")
+        String action;
+
+        @Label("Content Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("de.medieninformatik.chat.Broadcast")
+    @Label("Chat Broadcast")
+    @Category({"Chat", "Message"})
+    @Description("Sequenzvergabe und Einreihen einer Nachricht bei allen Empfängern")
+    @StackTrace(false)
+    @Threshold("1 ms")
+    static class Broadcast extends Event {
+        @Label("Sender")
+        String user;
+
+        @Label("Sequence")
+        long seq;
+
+        @Label("Recipients")
+        int recipients;
+
+        @Label("Dropped")
+        @Description("Empfänger, deren Warteschlange geschlossen war")
+        int dropped;
+
+        @Label("Content Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Encoded Size")
+        @Description("Größe der serialisierten Nachricht, einmal für alle Empfänger kodiert")
+        @DataAmount
+        long encodedBytes;
+    }
+
+    @Name("de.medieninformatik.chat.WriteStall")
+    @Label("Chat Write Stall")
+    @Category({"Chat", "Message"})
+    @Description("Schreiben einer Nachricht zu einem Empfänger hat lange gedauert (langsamer Client)")
+    @StackTrace(false)
+    @Threshold("20 ms")
+    static class WriteStall extends Event {
+        @Label("Recipient")
+        String user;
+
+        @Label("Action")
+        String action;
+
+        @Label("Sequence")
+        long seq;
+
+        @Label("Content Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("de.medieninformatik.chat.Throttle")
+    @Label("Chat Throttle")
+    @Category({"Chat", "Message"})
+    @Description("Sendekontingent eines Nutzers überschritten")
+    @StackTrace(false)
+    static class Throttle extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Action")
+        String action;
+
+        @Label("Policy")
+        String policy;
+
+        @Label("Wait")
+        @Description("Wartezeit, bis das Kontingent die Nachricht erlaubt hätte")
+        @Timespan
+        long wait;
+    }
+
+    @Name("de.medieninformatik.news.SendFailure")
+    @Label("News Send Failure")
+    @Category({"Chat", "News"})
+    @Description("Senden an eine /news-WebSocket-Sitzung fehlgeschlagen, Sitzung wird geschlossen")
+    static class NewsSendFailure extends Event {
+        @Label("Session")
+        String session;
+
+        @Label("Message")
+        String message;
+    }
+}
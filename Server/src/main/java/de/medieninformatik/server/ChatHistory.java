@@ -0,0 +1,81 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Message;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Begrenzter Verlauf der zuletzt verteilten Nachrichten.
+ * Vergibt die Sequenznummern und liefert beim Wiederanmelden
+ * (RESUME) die Lücke seit der letzten beim Client
+ * angekommenen Nachricht. Teilstücke großer Inhalte (CHUNK) stehen nicht
+ * im Verlauf, sie werden nur live weitergeleitet.
+ */
+class ChatHistory {
+    private final Deque<Message> messages;
+    private final int capacity;
+    private long lastSeq;
+
+    /**
+     * Konstruktor
+     * @param capacity maximale Anzahl gespeicherter Nachrichten
+     */
+    public ChatHistory(int capacity) {
+        this.messages = new ArrayDeque<>(capacity);
+        this.capacity = capacity;
+        this.lastSeq = 0;
+    }
+
+    /**
+     * Vergibt die nächste Sequenznummer und speichert die Nachricht.
+     * Ist der Verlauf voll, wird die älteste Nachricht verworfen.
+     * An- und Abmeldungen stehen nicht im Verlauf, sie werden als
+     * PRESENCE-Snapshot bzw. -Delta verteilt.
+     * @param msg SEND- oder PRIVATE-Nachricht ohne Sequenznummer
+     * @return Nachricht mit Sequenznummer
+     */
+    public synchronized Message append(Message msg) {
+        assert msg.action() == Message.Action.SEND || msg.action() == Message.Action.PRIVATE;
+        Message m = msg.withSeq(++lastSeq);
+        if(messages.size() == capacity) messages.removeFirst();
+        messages.addLast(m);
+        return m;
+    }
+
+    /**
+     * Alle gespeicherten Nachrichten nach seq, die für den Nutzer
+     * sichtbar sind (private Nachrichten nur für Absender und Empfänger).
+     * @param seq letzte beim Client angekommene Sequenznummer
+     * @param user Nutzer
+     * @return Nachrichten in Sequenz-Reihenfolge
+     */
+    public synchronized List<Message> since(long seq, String user) {
+        List<Message> gap = new ArrayList<>();
+        for(Message m : messages) {
+            if(m.seq() <= seq) continue;
+            if(m.action() == Message.Action.PRIVATE &&
+                    !user.equals(m.user()) && !user.equals(m.recipient())) continue;
+            gap.add(m);
+        }
+        return gap;
+    }
+
+    /**
+     * @return zuletzt vergebene Sequenznummer, 0 falls noch keine
+     */
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    /**
+     * Prüft, ob der Verlauf die Lücke nach seq noch vollständig enthält
+     * @param seq letzte beim Client angekommene Sequenznummer
+     * @return true falls keine Nachricht verloren ist
+     */
+    public synchronized boolean covers(long seq) {
+        return messages.isEmpty() || messages.peekFirst().seq() <= seq + 1;
+    }
+}
@@ -1,36 +1,149 @@
 package de.medieninformatik.server;
 
+import de.medieninformatik.Message.Chunks;
 import de.medieninformatik.Message.Message;
+import de.medieninformatik.Message.Outbox;
+import de.medieninformatik.Message.Presence;
+import de.medieninformatik.transport.Acceptor;
+import de.medieninformatik.transport.Transport;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.function.Consumer;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ChatServer extends Thread {
     /**
-     * Zuordnung Nutzer-> ObjectOutpuStream
+     * Anzahl der Nachrichten, die für RESUME vorgehalten werden
+     */
+    private static final int HISTORY_SIZE = 1000;
+
+    /**
+     * Maximale Wartezeit beim Abmelden, bis die Sende-Warteschlange leer ist
+     */
+    private static final long FINISH_TIMEOUT_MS = 1000;
+
+    /**
+     * Maximale Anzahl gleichzeitig laufender Übertragungen je Verbindung
+     */
+    private static final int MAX_OPEN_TRANSFERS = 16;
+
+    /**
+     * Abstand zwischen zwei Läufen zum Zusammenfassen der Index-Segmente
+     */
+    private static final long MERGE_INTERVAL_SECONDS = 10;
+
+    /**
+     * Maximale Anzahl Nachrichten, die auf die Aufnahme in den Suchindex warten
+     */
+    private static final int INDEX_QUEUE_SIZE = 10_000;
+
+    /**
+     * Maximale Anzahl Nachrichten, die mit einem Gathering-Write geschrieben werden
+     */
+    private static final int MAX_GATHER = 16;
+
+    /**
+     * Maximale Wartezeit, bis ein abgelehnter Client die Verbindung schließt
+     */
+    private static final long REJECT_LINGER_MS = 1000;
+
+    /**
+     * Abstand, in dem abgelehnte Verbindungen auf EOF geprüft werden
+     */
+    private static final long REJECT_POLL_MS = 50;
+
+    /**
+     * Maximale Anzahl abgelehnter Verbindungen, die noch auf EOF warten;
+     * darüber wird sofort geschlossen, damit eine Flut keine Dateideskriptoren aufbraucht
+     */
+    private static final int MAX_LINGERING = 256;
+
+    /**
+     * Abstand zwischen zwei Läufen zum Entfernen abgelaufener Sitzungen
+     */
+    private static final long SESSION_SWEEP_SECONDS = 60;
+
+    /**
+     * Eine ausgehende Nachricht mit ihrer Kodierung, die sich alle
+     * Empfänger teilen. Die Nachricht selbst wird nur noch für die Spur in
+     * der Outbox und für JFR gebraucht.
+     * @param message Nachricht
+     * @param buffer kodierte Nachricht, eine Referenz je Warteschlange
+     */
+    private record Frame(Message message, SharedBuffer buffer) {
+    }
+
+    /**
+     * Laufende Übertragung (CHUNK-Folge) eines Absenders
+     */
+    private static class Transfer {
+        private int size; // bisher übertragene Zeichen
+        private final Set<String> aborted = new HashSet<>(); // Empfänger, denen ein Teilstück fehlt
+    }
+
+    /**
+     * Zuordnung Nutzer-> Verbindung
+     * Jede Connection hat eine eigene Sende-Warteschlange, die von einem
+     * Schreib-Thread im Pool abgearbeitet wird. Versenden blockiert damit
+     * nie, auch nicht bei langsamen Klienten.
      */
     private static class Connection {
         private final String user;
-        private final ObjectOutputStream out;
+        private final Transport transport;
+        private final BufferPool buffers;
+        private final Outbox<Frame> outbox;
+        private Future<?> writer;
 
         /**
-         * Der Konstruktor assoziert den Nutzer mit dem Ausgabstrom
+         * Der Konstruktor assoziert den Nutzer mit der Verbindung. Der
+         * Objektstrom-Header muss bereits geschrieben sein, danach werden
+         * nur noch kodierte Nachrichten aus dem BufferPool gesendet.
          * @param user Chat-Nutzer
-         * @param out  Chat-Datenstrom zu den Klienten
+         * @param transport Verbindung zum Klienten
+         * @param buffers Pool für kodierte Nachrichten
+         * @param maxQueuedMessages maximale Anzahl wartender Nachrichten
+         * @param maxQueuedChunks maximale Anzahl wartender Teilstücke
          */
-        public Connection(String user, ObjectOutputStream out) {
+        public Connection(String user, Transport transport, BufferPool buffers,
+                          int maxQueuedMessages, int maxQueuedChunks) {
             this.user = user;
-            this.out = out;
+            this.transport = transport;
+            this.buffers = buffers;
+            this.outbox = new Outbox<>(maxQueuedMessages, maxQueuedChunks,
+                    f -> f.message().action() == Message.Action.CHUNK);
+        }
+
+        /**
+         * Startet den Schreib-Thread
+         * @param pool Thread-Pool des Servers
+         */
+        public void start(ExecutorService pool) {
+            writer = pool.submit(this::write);
         }
 
         /**
@@ -42,11 +155,140 @@ public class ChatServer extends Thread {
         }
 
         /**
-         * Standard getter für den Ausgabestrom zu den Klienten
-         * @return Ausgabestrom
+         * @return true falls die Verbindung geschlossen ist und nichts mehr annimmt
+         */
+        public boolean isClosed() {
+            return outbox.isClosed();
+        }
+
+        /**
+         * Standard getter für die Verbindung zum Klienten
+         * @return Verbindung
+         */
+        public Transport getTransport() {
+            return transport;
+        }
+
+        /**
+         * Stellt eine Nachricht in die Sende-Warteschlange des Klienten.
+         * Teilstücke (CHUNK) werden fair mit normalen Nachrichten gemischt.
+         * @param msg Nachricht
+         * @return false falls die Verbindung geschlossen oder die
+         *  Warteschlange voll ist
          */
-        public ObjectOutputStream getOutputStream() {
-            return out;
+        public boolean send(Message msg) {
+            SharedBuffer buffer = buffers.encode(msg);
+            try {
+                return send(msg, buffer);
+            } finally {
+                buffer.release();
+            }
+        }
+
+        /**
+         * Stellt eine bereits kodierte Nachricht in die Warteschlange,
+         * z.B. dieselbe Kodierung für alle Empfänger einer Nachricht.
+         * Die Warteschlange hält eine eigene Referenz auf den Puffer.
+         * Ist die Warteschlange für normale Nachrichten voll, liest der
+         * Klient nicht mehr mit: die Verbindung wird getrennt, statt für ihn
+         * unbegrenzt Puffer zu sammeln. Beim Wiederanmelden (RESUME) holt er
+         * die Lücke aus dem Verlauf.
+         * @param msg Nachricht
+         * @param buffer ihre Kodierung
+         * @return false falls die Verbindung geschlossen oder die
+         *  Warteschlange voll ist
+         */
+        public boolean send(Message msg, SharedBuffer buffer) {
+            buffer.retain();
+            if(outbox.offer(new Frame(msg, buffer))) return true;
+            buffer.release();
+            if(msg.action() != Message.Action.CHUNK && !outbox.isClosed()) {
+                System.err.printf("%s: Warteschlange voll, Verbindung getrennt%n", user);
+                close();
+            }
+            return false;
+        }
+
+        /**
+         * Schreib-Thread: sendet die Nachrichten aus der Warteschlange.
+         * Was bereits wartet, geht mit einem Gathering-Write zusammen
+         * raus; danach werden die Puffer freigegeben.
+         */
+        private void write() {
+            Frame[] frames = new Frame[MAX_GATHER];
+            ByteBuffer[] views = new ByteBuffer[MAX_GATHER];
+            int n = 0;
+            try {
+                Frame first;
+                while((first = outbox.take()) != null) {
+                    frames[n++] = first;
+                    Frame next;
+                    while(n < MAX_GATHER && (next = outbox.poll()) != null) frames[n++] = next;
+                    ChatEvents.WriteStall stall = new ChatEvents.WriteStall();
+                    stall.begin();
+                    for(int i = 0; i < n; i++) views[i] = frames[i].buffer().view();
+                    transport.write(n == MAX_GATHER ? views : Arrays.copyOf(views, n));
+                    stall.end();
+                    if(stall.shouldCommit()) {
+                        stall.user = user;
+                        stall.action = first.message().action().name();
+                        stall.seq = first.message().seq();
+                        for(int i = 0; i < n; i++) stall.bytes += frames[i].buffer().size();
+                        stall.commit();
+                    }
+                    n = release(frames, views, n);
+                }
+            } catch(IOException e) {
+                close(); // ChatHandler bemerkt den Abbruch beim Lesen
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                release(frames, views, n);
+            }
+        }
+
+        /**
+         * Gibt die Puffer geschriebener (oder verworfener) Nachrichten frei
+         * @return 0, die neue Anzahl
+         */
+        private static int release(Frame[] frames, ByteBuffer[] views, int n) {
+            for(int i = 0; i < n; i++) {
+                frames[i].buffer().release();
+                frames[i] = null;
+                views[i] = null;
+            }
+            return 0;
+        }
+
+        /**
+         * Schließt die Warteschlange und wartet, bis die noch wartenden
+         * Nachrichten (z.B. das eigene LEAVE) gesendet sind.
+         */
+        public void finish() {
+            outbox.close();
+            if(writer == null) return;
+            try {
+                writer.get(FINISH_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch(ExecutionException | TimeoutException e) {
+                close();
+            }
+        }
+
+        /**
+         * Schließt die Verbindung zum Klienten, z.B. wenn der Nutzer über
+         * eine neue Verbindung (RESUME) zurückgekehrt ist. Nicht mehr
+         * gesendete Nachrichten geben ihre Puffer zurück.
+         */
+        public void close() {
+            outbox.close();
+            for(Frame f : outbox.drain()) f.buffer().release();
+            try {
+                transport.close();
+            } catch(IOException e) {
+                // Verbindung war bereits tot
+            }
         }
 
         /**
@@ -60,7 +302,7 @@ public class ChatServer extends Thread {
             if(o == null || getClass() != o.getClass()) return false;
             Connection that = (Connection) o;
             return Objects.equals(user, that.user) &&
-                    Objects.equals(out, that.out);
+                    Objects.equals(transport, that.transport);
         }
 
         /**
@@ -69,7 +311,7 @@ public class ChatServer extends Thread {
          */
         @Override
         public int hashCode() {
-            return Objects.hash(user, out);
+            return Objects.hash(user, transport);
         }
     }
 
@@ -77,16 +319,26 @@ public class ChatServer extends Thread {
      * Der im Thread-Pool ausgeführte ChatHandler
      */
     private class ChatHandler implements Runnable {
-        private final Socket socket;
+        private final Transport transport;
         private String user;
+        private Connection own; // eigene registrierte Verbindung
+        private ChatSession session; // nach der Anmeldung die Sitzung des Nutzers
+        private boolean left; // Client hat sich mit LEAVE abgemeldet
+        private final Map<Long, Transfer> transfers; // laufende Übertragungen nach Id
+        private SendQuota quota; // nach der Anmeldung das Kontingent des Nutzers
+        private boolean throttled; // Hinweis zum Kontingent schon gesendet
+        private boolean refused; // Hinweis "nicht angemeldet" schon gesendet
 
         /**
          * Konstruktor
-         * @param socket de Socket für die Verbindung zum Client
+         * @param transport die Verbindung zum Client (TCP, Unix-Domain-Socket, Speicher)
          */
-        public ChatHandler(Socket socket) {
-            this.socket = socket;
+        public ChatHandler(Transport transport) {
+            this.transport = transport;
             this.user = null;
+            this.own = null;
+            this.transfers = new HashMap<>();
+            this.quota = null;
         }
 
         /**
@@ -98,79 +350,431 @@ public class ChatServer extends Thread {
             ObjectOutputStream out = null;
             ObjectInputStream in = null;
             try {
-                out = new ObjectOutputStream(socket.getOutputStream());
+                out = new ObjectOutputStream(transport.getOutputStream());
                 out.flush();
-                in = new ObjectInputStream(socket.getInputStream());
+                in = new ObjectInputStream(transport.getInputStream());
 
                 while(true) {
                     Message msg = (Message) in.readObject();
+                    if(msg != null && msg.timing() != null) msg = msg.withTiming(msg.timing().received());
                     Message.Action action = msg != null ?
                             msg.action() : Message.Action.LEAVE;
-                    if(action == Message.Action.LEAVE) break;
+                    if(action == Message.Action.LEAVE) {
+                        left = true;
+                        break;
+                    }
+                    if(action == Message.Action.SEND || action == Message.Action.PRIVATE
+                            || action == Message.Action.CHUNK) {
+                        if(user == null) { // erst nach JOIN/RESUME, vorher gibt es kein Kontingent
+                            refuse(msg, out);
+                            continue;
+                        }
+                        if(!admit(msg)) {
+                            if(config.getQuotaPolicy() == ChatServerConfig.QuotaPolicy.DISCONNECT) break;
+                            continue;
+                        }
+                    }
+                    ChatEvents.Receive received = new ChatEvents.Receive();
+                    received.begin();
                     if(action == Message.Action.JOIN) join(msg, out);
-                    if(action == Message.Action.SEND) broadcast(msg);
+                    if(action == Message.Action.SEND && fits(msg)) broadcast(msg);
+                    if(action == Message.Action.PRIVATE && fits(msg)) sendPrivate(msg);
+                    if(action == Message.Action.RESUME) resume(msg, out);
+                    if(action == Message.Action.CHUNK) forwardChunk(msg);
+                    received.end();
+                    if(received.shouldCommit()) {
+                        received.user = user != null ? user : msg.user();
+                        received.action = action.name();
+                        received.bytes = Chunks.utf8Length(msg.content());
+                        received.commit();
+                    }
                 }
             } catch(IOException | ClassNotFoundException e) {
                 System.err.println(e);
             } finally {
                 // Verbindung beendet, aufräumen
                 try {
-                    logout(user, out);
-                    socket.shutdownInput();
-                    socket.shutdownOutput();
-                    socket.close();
+                    logout();
+                    if(own != null) own.finish(); // wartende Nachrichten noch senden
+                    transport.close();
                 } catch(IOException e) {
                     System.err.println(e.getMessage());
+                } finally {
+                    permits.release(); // Platz für neue Verbindung
                 }
             }
         }
 
         /**
-         * Anmeldung eines neuen Nutzers
+         * Anmeldung eines neuen Nutzers. Der Nutzer bekommt sein Token für
+         * RESUME und die Liste aller angemeldeten Nutzer, die anderen
+         * erfahren von ihm über das nächste gebündelte Presence-Delta.
          * @param msg Nachricht vom Client
          * @param out Ausgabestrom zum Client
          */
-        private void join(Message msg, ObjectOutputStream out) {
+        private void join(Message msg, ObjectOutputStream out) throws IOException {
             assert msg.action() == Message.Action.JOIN;
-            Connection c = new Connection(msg.user(), out);
-            if(!connection.contains(c)) { // User noch nicht registriert
+            if(user != null) return; // Verbindung bereits angemeldet
+            if(!Presence.isValidName(msg.user())) { // Zeilenumbruch oder "Server": Presence bzw. Hinweise fälschbar
+                out.writeObject(new Message(Message.Action.LEAVE, msg.user(),
+                        "Ungültiger Nutzername"));
+                out.flush();
+                return;
+            }
+            Connection c = new Connection(msg.user(), transport, buffers,
+                    config.getMaxQueuedMessages(), config.getMaxQueuedChunks());
+            if(connection.putIfAbsent(msg.user(), c) == null) { // User noch nicht registriert
                 this.user = msg.user();
-                connection.add(c);
-                //msg = new Message(Message.Action.JOIN, user, null);
-                broadcast(msg);
+                this.own = c;
+                this.session = sessions.computeIfAbsent(user, u -> new ChatSession(new SendQuota(config)));
+                this.quota = session.quota();
+                session.attach();
+                c.start(pool);
+                // ein alter Inhaber des Namens kann danach nicht mehr fortsetzen
+                c.send(new Message(Message.Action.RESUME, user, session.newToken()));
+                c.send(Presence.snapshot(connection.keySet()));
+                presence.joined(user);
+                joined(false, 0);
                 System.out.printf("JOIN: %d Nutzer eingeloggt%n", connection.size());
+            } else { // Name bereits vergeben: Client wird abgemeldet
+                out.writeObject(new Message(Message.Action.LEAVE, msg.user(),
+                        "Nutzername bereits vergeben"));
+                out.flush();
+            }
+        }
+
+        /**
+         * Nachricht vor der Anmeldung, z.B. von einem Client, der nach einem
+         * abgelehnten RESUME schon weiter sendet: sie wird verworfen, die
+         * Verbindung bleibt offen für JOIN. Der Hinweis kommt nur einmal je
+         * Verbindung, eine Flut davon bekommt also keine Antworten.
+         * @param msg SEND-, PRIVATE- oder CHUNK-Nachricht
+         * @param out Ausgabestrom zum Client
+         */
+        private void refuse(Message msg, ObjectOutputStream out) throws IOException {
+            if(refused) return;
+            refused = true;
+            out.writeObject(new Message(Message.Action.PRIVATE, Message.SERVER,
+                    "Nicht angemeldet, Nachricht verworfen", msg.user()));
+            out.flush();
+        }
+
+        /**
+         * Wiederanmeldung nach Verbindungsabbruch: der Nutzer wird mit der
+         * neuen Verbindung registriert und bekommt nur die Nachrichten
+         * nach der letzten bei ihm angekommenen Sequenznummer.
+         * Als erstes bekommt er ein RESUME mit neuem Token; darauf wartet
+         * der Client, bevor er wieder sendet.
+         * Eine noch registrierte alte Verbindung wird ersetzt und geschlossen.
+         * Ohne gültiges Token oder mit einer Sequenznummer aus einem anderen
+         * Verlauf wird abgelehnt (RESUME ohne Token zurück), der Client
+         * meldet sich dann mit JOIN neu an.
+         * @param msg RESUME-Nachricht mit Token und letzter Sequenznummer
+         * @param out Ausgabestrom zum Client
+         */
+        private void resume(Message msg, ObjectOutputStream out) throws IOException {
+            assert msg.action() == Message.Action.RESUME;
+            if(user != null) return; // Verbindung bereits angemeldet
+            ChatSession s = msg.user() != null ? sessions.get(msg.user()) : null;
+            // Sequenznummer über der zuletzt vergebenen: der Client kennt einen
+            // anderen Verlauf, eine Lücke lässt sich nicht nachliefern
+            if(s == null || !s.matches(msg.content()) || msg.seq() > history.lastSeq()) {
+                out.writeObject(new Message(Message.Action.RESUME, msg.user(), null));
+                out.flush();
+                return;
+            }
+            this.user = msg.user();
+            this.session = s;
+            session.attach();
+            Connection c = new Connection(user, transport, buffers,
+                    config.getMaxQueuedMessages(), config.getMaxQueuedChunks());
+            this.own = c;
+            this.quota = session.quota();
+            c.send(new Message(Message.Action.RESUME, user, session.newToken()));
+            c.start(pool);
+            Connection previous;
+            // unter der Verlaufs-Sperre: keine neue Nachricht kann die Lücke überholen
+            synchronized(history) {
+                previous = connection.put(user, c);
+                c.send(Presence.snapshot(connection.keySet()));
+                if(!history.covers(msg.seq())) {
+                    c.send(new Message(Message.Action.SEND, Message.SERVER,
+                            "Verlauf unvollständig, ältere Nachrichten fehlen"));
+                }
+                // Zeitstempel nicht nachliefern, sie würden als Latenz zählen
+                for(Message m : history.since(msg.seq(), user)) c.send(m.withTiming(null));
+            }
+            if(previous != null) {
+                previous.close();
+            } else { // alte Verbindung war schon abgemeldet
+                presence.joined(user);
+            }
+            joined(true, msg.seq());
+            System.out.printf("RESUME: %s ab %d, %d Nutzer eingeloggt%n",
+                    user, msg.seq(), connection.size());
+        }
+
+        /**
+         * Zeichnet die Anmeldung für JFR auf
+         * @param resume Wiederanmeldung
+         * @param seq letzte beim Client angekommene Sequenznummer
+         */
+        private void joined(boolean resume, long seq) {
+            ChatEvents.Join event = new ChatEvents.Join();
+            if(event.shouldCommit()) {
+                event.user = user;
+                event.resume = resume;
+                event.resumeSeq = seq;
+                event.online = connection.size();
+                event.commit();
             }
         }
 
         /**
-         * Bei bestehnder Verbindung: Behandle ankommende Nachricht
+         * Bei bestehnder Verbindung: Behandle ankommende Nachricht.
+         * Die Nachricht bekommt die nächste Sequenznummer und wird im
+         * Verlauf gespeichert.
          * @param msg Nachricht
          */
         private void broadcast(Message msg) {
-            Consumer<Connection> consume = c -> {
-                try {  // Sende Nachricht an Client
-                    ObjectOutputStream out = c.getOutputStream();
-                    out.writeObject(msg);
-                    out.flush();
-                } catch(IOException e) {
-                    System.err.println(e);
+            ChatEvents.Broadcast event = new ChatEvents.Broadcast();
+            event.begin();
+            final Message m;
+            final SharedBuffer buffer;
+            int recipients = 0, dropped = 0;
+            // Sequenzvergabe und Versand unter einer Sperre: alle Clients
+            // bekommen die Nachrichten in Sequenz-Reihenfolge
+            synchronized(history) {
+                m = dispatched(history.append(msg));
+                // nur Einreihen: Zerlegen und die Sperre des Index übernimmt der
+                // Index-Thread, eine langsame Suche hält den Versand nicht auf.
+                // Ist die Warteschlange voll, fehlt die Nachricht in der Suche.
+                if(m.action() == Message.Action.SEND) indexQueue.offer(m);
+                // einmal kodieren, alle Empfänger teilen sich den Puffer
+                buffer = buffers.encode(m);
+                // für alle registrierten Clienten: sende Nachricht
+                // (nur Einreihen, blockiert nicht)
+                for(Connection c : connection.values()) {
+                    if(c.send(m, buffer)) recipients++;
+                    else dropped++;
                 }
-            };
-            // für alle registrierten Clienten: sende Nachricht
-            connection.forEach(consume);
+            }
+            buffer.release();
+            event.end();
+            if(event.shouldCommit()) {
+                event.user = m.user();
+                event.seq = m.seq();
+                event.recipients = recipients;
+                event.dropped = dropped;
+                event.bytes = Chunks.utf8Length(m.content());
+                event.encodedBytes = buffer.size();
+                event.commit();
+            }
         }
 
         /**
-         * Beende Verbindung zu Nutzer
-         * @param user Nutzer
-         * @param out Datenstrom zum Klienten
+         * Private Nachricht: wird über den Nutzer-Index direkt an den
+         * Empfänger und als Bestätigung an den Absender geschickt.
+         * @param msg Nachricht mit gesetztem Empfänger
          */
-        private void logout(String user, ObjectOutputStream out) {
-            Connection c = new Connection(user, out);
-            if(connection.contains(c)) {
-                Message msg = new Message(Message.Action.LEAVE, user, null);
-                broadcast(msg);
-                connection.remove(c);
+        private void sendPrivate(Message msg) {
+            assert msg.action() == Message.Action.PRIVATE;
+            if(user == null) return; // nur für angemeldete Nutzer
+            Connection target = msg.recipient() != null ?
+                    connection.get(msg.recipient()) : null;
+            if(target == null) { // Hinweis an Absender, ohne Sequenznummer
+                notice(String.format("%s ist nicht angemeldet", msg.recipient()));
+                return;
+            }
+            synchronized(history) {
+                // Absender wird vom Server gesetzt, nicht vom Client übernommen
+                Message m = dispatched(history.append(new Message(Message.Action.PRIVATE,
+                        user, msg.content(), msg.recipient(), 0, null, msg.timing())));
+                SharedBuffer buffer = buffers.encode(m);
+                target.send(m, buffer);
+                if(own != target) own.send(m, buffer);
+                buffer.release();
+            }
+        }
+
+        /**
+         * Setzt den Verteilzeitpunkt, falls die Nachricht Zeitstempel trägt
+         * @param m Nachricht mit Sequenznummer
+         * @return Nachricht, wie sie an die Empfänger geht
+         */
+        private Message dispatched(Message m) {
+            return m.timing() != null ? m.withTiming(m.timing().dispatched()) : m;
+        }
+
+        /**
+         * Leitet ein Teilstück einer großen Übertragung weiter, an alle oder
+         * nur an den Empfänger. Teilstücke bekommen keine Sequenznummer und
+         * werden nicht im Verlauf gespeichert; zusammengesetzt wird erst
+         * beim Empfänger. Der Server hält je Übertragung also nur ihre Größe,
+         * nicht den Inhalt. Große Inhalte sind deshalb nur live zu sehen:
+         * RESUME liefert sie nicht nach und die Suche findet sie nicht.
+         * Zu große Teilstücke oder Übertragungen und neue Übertragungen über
+         * MAX_OPEN_TRANSFERS werden verworfen und der Absender benachrichtigt.
+         * @param msg CHUNK-Nachricht
+         */
+        private void forwardChunk(Message msg) {
+            Message.Chunk chunk = msg.chunk();
+            if(user == null || chunk == null || msg.content() == null) return;
+            long id = chunk.transferId();
+            if(chunk.index() == 0 && transfers.size() >= MAX_OPEN_TRANSFERS) {
+                notice("Zu viele laufende Übertragungen, verworfen");
+                return;
+            }
+            Transfer transfer = chunk.index() == 0 ? new Transfer() : transfers.get(id);
+            if(transfer == null) return; // unbekannt oder bereits verworfen
+            int total = transfer.size + msg.content().length();
+            if(msg.content().length() > config.getMaxChunkSize() ||
+                    total > config.getMaxPayloadSize()) {
+                transfers.remove(id);
+                notice("Übertragung zu groß, verworfen");
+                return;
+            }
+            transfer.size = total;
+            if(chunk.isLast()) transfers.remove(id); else transfers.put(id, transfer);
+
+            // Absender wird vom Server gesetzt, nicht vom Client übernommen
+            Message m = new Message(Message.Action.CHUNK, user, msg.content(),
+                    msg.recipient(), 0, chunk);
+            if(msg.recipient() == null) {
+                sendChunk(m, connection.values(), transfer);
+                return;
+            }
+            Connection target = connection.get(msg.recipient());
+            if(target == null) {
+                transfers.remove(id);
+                notice(String.format("%s ist nicht angemeldet", msg.recipient()));
+                return;
+            }
+            sendChunk(m, own != target ? List.of(target, own) : List.of(target), transfer);
+        }
+
+        /**
+         * Verteilt ein Teilstück, einmal kodiert. Ist bei einem Empfänger
+         * die Warteschlange für Teilstücke voll, fehlt ihm ein Teilstück und
+         * er kann die Übertragung nicht mehr zusammensetzen: er bekommt keine
+         * weiteren Teilstücke davon, und er und der Absender erhalten je
+         * einen Hinweis.
+         * @param m CHUNK-Nachricht
+         * @param targets Empfänger
+         * @param transfer Übertragung, zu der das Teilstück gehört
+         */
+        private void sendChunk(Message m, Collection<Connection> targets, Transfer transfer) {
+            SharedBuffer buffer = buffers.encode(m);
+            try {
+                for(Connection c : targets) {
+                    if(transfer.aborted.contains(c.getUser()) || c.send(m, buffer)) continue;
+                    transfer.aborted.add(c.getUser());
+                    if(c.isClosed()) continue; // abgemeldet, niemand mehr zu benachrichtigen
+                    if(c == own) {
+                        notice("Eigene Kopie der Übertragung abgebrochen");
+                        continue;
+                    }
+                    c.send(new Message(Message.Action.PRIVATE, Message.SERVER,
+                            String.format("Übertragung von %s abgebrochen", user), c.getUser()));
+                    notice(String.format("Übertragung an %s abgebrochen", c.getUser()));
+                }
+            } finally {
+                buffer.release();
+            }
+        }
+
+        /**
+         * Prüft die Größe einer einzelnen Nachricht. Größere Inhalte
+         * müssen als CHUNK-Folge gesendet werden.
+         * @param msg SEND- oder PRIVATE-Nachricht
+         * @return true falls die Nachricht weitergeleitet werden darf
+         */
+        private boolean fits(Message msg) {
+            if(msg.content() == null || msg.content().length() <= config.getMaxChunkSize())
+                return true;
+            notice("Nachricht zu groß, verworfen");
+            return false;
+        }
+
+        /**
+         * Prüft das Sendekontingent vor dem Verteilen. Teilstücke zählen
+         * nur mit ihrer Größe, als Nachricht zählt die ganze Übertragung.
+         * Bei DELAY wartet dieser Handler, liest also auch nicht weiter:
+         * der Client wird über TCP gebremst, andere Nutzer merken nichts.
+         * @param msg SEND-, PRIVATE- oder CHUNK-Nachricht
+         * @return true falls die Nachricht weitergeleitet werden darf
+         */
+        private boolean admit(Message msg) {
+            int count = msg.action() != Message.Action.CHUNK
+                    || msg.chunk() == null || msg.chunk().isLast() ? 1 : 0;
+            long size = Chunks.utf8Length(msg.content());
+            long wait = quota.tryAcquire(count, size);
+            if(wait == 0) {
+                throttled = false;
+                return true;
+            }
+            ChatServerConfig.QuotaPolicy policy = config.getQuotaPolicy();
+            ChatEvents.Throttle event = new ChatEvents.Throttle();
+            if(event.shouldCommit()) {
+                event.user = user != null ? user : msg.user();
+                event.action = msg.action().name();
+                event.policy = policy.name();
+                event.wait = wait;
+                event.commit();
+            }
+            switch(policy) {
+                case DELAY -> {
+                    try {
+                        do {
+                            TimeUnit.NANOSECONDS.sleep(wait);
+                        } while((wait = quota.tryAcquire(count, size)) > 0);
+                        return true;
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+                case DISCONNECT -> {
+                    // sonst meldet sich der Client sofort mit RESUME zurück
+                    session.invalidate();
+                    notice("Zu viele Nachrichten, Verbindung wird getrennt");
+                    return false;
+                }
+                default -> {
+                    if(!throttled) notice("Zu viele Nachrichten, werden verworfen");
+                    throttled = true;
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Hinweis des Servers an den eigenen Nutzer (ohne Sequenznummer)
+         * @param text Hinweis
+         */
+        private void notice(String text) {
+            if(own != null) own.send(new Message(Message.Action.PRIVATE, Message.SERVER, text, user));
+        }
+
+        /**
+         * Beende Verbindung zu Nutzer. Der Nutzer bekommt sein LEAVE
+         * direkt, die anderen über das nächste Presence-Delta.
+         * Ist der Nutzer inzwischen über eine neue Verbindung angemeldet
+         * (RESUME), passiert nichts.
+         */
+        private void logout() {
+            if(own == null) return; // nie angemeldet
+            if(connection.remove(user, own)) {
+                session.detach();
+                if(left) session.invalidate(); // nur nach Abbruch fortsetzbar
+                own.send(new Message(Message.Action.LEAVE, user, null));
+                presence.left(user);
+                ChatEvents.Logout event = new ChatEvents.Logout();
+                if(event.shouldCommit()) {
+                    event.user = user;
+                    event.online = connection.size();
+                    event.commit();
+                }
                 System.out.printf("LEAVE: %d Nutzer eingeloggt%n", connection.size());
             }
         }
@@ -178,53 +782,256 @@ public class ChatServer extends Thread {
 
     /**
      * Attribute
+     * connection: Index Nutzername -> Connection
+     * buffers: Direct Buffers für kodierte ausgehende Nachrichten
+     * sessions: Token für RESUME und Sendekontingent je Nutzer, bis sessionTimeout
+     *  nach dem Abbruch bzw. bis das Kontingent wieder voll wäre
+     * permits: freie Plätze für gleichzeitige Verbindungen
+     * acceptRate: begrenzt die Rate neuer Verbindungen
+     * acceptors: nehmen Verbindungen entgegen, der erste im Server-Thread
      */
-    private final Set<Connection> connection;
-    private final int port;
-    private final ServerSocket server;
+    private final ConcurrentMap<String, Connection> connection;
+    private final ConcurrentMap<String, ChatSession> sessions;
+    private final BufferPool buffers;
+    private final ChatHistory history;
+    private final SearchIndex searchIndex;
+    private final BlockingQueue<Message> indexQueue; // neue Nachrichten für den Index, in Sequenz-Reihenfolge
+    private final Thread indexer; // einziger Schreiber des Index
+    private final PresenceService presence;
+    private final ScheduledExecutorService maintenance;
+    private final ChatServerConfig config;
+    private final List<Acceptor> acceptors;
     private final ExecutorService pool;
+    private final Semaphore permits;
+    private final TokenBucket acceptRate;
+    private final AtomicInteger lingering; // abgelehnte Verbindungen, die noch auf EOF warten
 
     /**
-     * Konstruktor
+     * Konstruktor mit Standard-Einstellungen
      * @param port an diesm Port wird auf Verbindungen gewartet
      * @throws IOException
      */
     public ChatServer(int port) throws IOException {
-        this.port = port;
-        this.connection = new CopyOnWriteArraySet<Connection>();
-        this.server = new ServerSocket(port);
+        this(port, new ChatServerConfig());
+    }
+
+    /**
+     * Konstruktor
+     * @param port an diesm Port wird auf Verbindungen gewartet
+     * @param config Einstellungen für Zugangskontrolle und Sockets
+     * @throws IOException
+     */
+    public ChatServer(int port, ChatServerConfig config) throws IOException {
+        this(new TcpAcceptor(port, config), config);
+    }
+
+    /**
+     * Konstruktor für beliebige Transporte, z.B. einen PipeAcceptor
+     * für simulierte Clients im selben Prozess
+     * @param acceptor nimmt die Verbindungen entgegen
+     * @param config Einstellungen für Zugangskontrolle
+     */
+    public ChatServer(Acceptor acceptor, ChatServerConfig config) {
+        this.config = config;
+        this.acceptors = new CopyOnWriteArrayList<>(List.of(acceptor));
+        this.connection = new ConcurrentHashMap<>();
+        this.sessions = new ConcurrentHashMap<>();
+        this.history = new ChatHistory(HISTORY_SIZE);
+        this.searchIndex = new SearchIndex(config.getSearchIndexMaxDocs());
+        this.indexQueue = new LinkedBlockingQueue<>(INDEX_QUEUE_SIZE);
+        this.indexer = new Thread(this::index, "ChatServer-index");
+        indexer.setDaemon(true);
+        this.buffers = new BufferPool(config.getMaxPooledBuffers());
+        this.presence = new PresenceService(this::sendAll);
         this.pool  = Executors.newCachedThreadPool();
+        this.permits = new Semaphore(config.getMaxConnections());
+        this.acceptRate = new TokenBucket(config.getAcceptsPerSecond(), config.getAcceptBurst());
+        this.lingering = new AtomicInteger();
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ChatServer-maintenance");
+            t.setDaemon(true);
+            return t;
+        });
+        // Index-Segmente regelmäßig zusammenfassen, außerhalb des Sende-Pfads
+        maintenance.scheduleWithFixedDelay(searchIndex::merge,
+                MERGE_INTERVAL_SECONDS, MERGE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        // An-/Abmeldungen gebündelt je Zeitfenster verteilen
+        maintenance.scheduleAtFixedRate(presence::flush, config.getPresenceWindowMillis(),
+                config.getPresenceWindowMillis(), TimeUnit.MILLISECONDS);
+        // abgelaufene Sitzungen (kein RESUME innerhalb der Frist) entfernen
+        maintenance.scheduleWithFixedDelay(this::expireSessions,
+                SESSION_SWEEP_SECONDS, SESSION_SWEEP_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Entfernt Sitzungen von Nutzern, die länger als sessionTimeout
+     * getrennt sind
+     */
+    private void expireSessions() {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(config.getSessionTimeoutMillis());
+        sessions.entrySet().removeIf(e ->
+                e.getValue().expired(timeout) && !connection.containsKey(e.getKey()));
+    }
+
+    /**
+     * Index-Thread: nimmt die Nachrichten aus der Warteschlange in den
+     * Suchindex auf, bis stopServer ihn unterbricht
+     */
+    private void index() {
+        try {
+            while(true) searchIndex.add(indexQueue.take());
+        } catch(InterruptedException e) {
+            // ausgelöst durch stopServer
+        }
+    }
+
+    /**
+     * Suchindex über alle verteilten SEND-Nachrichten,
+     * z.B. für den SearchServlet
+     * @return der Index
+     */
+    SearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    /**
+     * Sendet eine Nachricht ohne Sequenznummer an alle angemeldeten
+     * Nutzer (Presence). Kodiert wird nur einmal.
+     * @param m Nachricht
+     */
+    private void sendAll(Message m) {
+        SharedBuffer buffer = buffers.encode(m);
+        try {
+            for(Connection c : connection.values()) c.send(m, buffer);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Weiterer Zugang zum selben Chat, z.B. ein UnixAcceptor für Clients
+     * auf demselben Rechner. Muss vor start() aufgerufen werden.
+     * @param acceptor nimmt die Verbindungen entgegen
+     */
+    public void addAcceptor(Acceptor acceptor) {
+        acceptors.add(acceptor);
     }
 
     /**
      * Der Server-Thread nimmt initiale Verbindsanfragen entgegen
-     * und deligiert deren Bearbeitung an Threads im Pool
+     * und deligiert deren Bearbeitung an Threads im Pool.
+     * Weitere Acceptors laufen mit eigener Schleife im Pool.
      */
     @Override
     public void run() { // Server-Thread
+        indexer.start();
+        for(Acceptor a : acceptors.subList(1, acceptors.size())) {
+            pool.submit(() -> accept(a));
+        }
+        accept(acceptors.get(0));
+    }
+
+    /**
+     * Nimmt Verbindungen entgegen, bis der Acceptor geschlossen wird
+     * @param acceptor Zugang
+     */
+    private void accept(Acceptor acceptor) {
         try {
             while(true) {
-                final Socket socket = server.accept();
-                // Verbindungen werden an Pool übergeben
-                pool.submit(new ChatHandler(socket));
+                final Transport transport = acceptor.accept();
+                // Zugangskontrolle: Rate und Anzahl gleichzeitiger Verbindungen
+                if(!acceptRate.tryAcquire() || !permits.tryAcquire()) {
+                    reject(transport);
+                    continue;
+                }
+                try {
+                    // Verbindungen werden an Pool übergeben
+                    pool.submit(new ChatHandler(transport));
+                } catch(RejectedExecutionException e) {
+                    permits.release();
+                    transport.close();
+                }
             }
-        } catch(SocketException e) {
+        } catch(ClosedChannelException e) {
             // ausgelöst durch stopServer
         } catch(Exception e) {
             System.err.println(e);
         }
     }
 
+    /**
+     * Lehnt eine Verbindung bei Überlast ab: der Client bekommt eine
+     * BUSY-Nachricht, danach wird die Senderichtung beendet. Geschlossen
+     * wird erst, wenn der Client geschlossen hat (siehe closeWhenDrained).
+     * Läuft im Server-Thread, deshalb nur ein kurzer Schreibvorgang.
+     * @param transport die abgelehnte Verbindung
+     */
+    private void reject(Transport transport) {
+        try {
+            ObjectOutputStream out = new ObjectOutputStream(transport.getOutputStream());
+            out.writeObject(new Message(Message.Action.BUSY, Message.SERVER,
+                    "Server ausgelastet, bitte später erneut versuchen"));
+            out.flush();
+            transport.shutdownOutput();
+            if(lingering.incrementAndGet() <= MAX_LINGERING) {
+                closeWhenDrained(transport, System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(REJECT_LINGER_MS));
+                return;
+            }
+            lingering.decrementAndGet(); // zu viele offen: sofort schließen
+        } catch(IOException e) {
+            // Client bereits weg
+        }
+        closeQuietly(transport);
+    }
+
+    /**
+     * Verwirft, was ein abgelehnter Client noch schickt (Stream-Header,
+     * JOIN), bis er die Verbindung schließt oder die Frist abläuft, und
+     * schließt erst dann. Mit ungelesenen Daten im Empfangspuffer würde
+     * TCP beim Schließen ein RST senden, und der Client verlöre womöglich
+     * die BUSY-Nachricht. Blockiert nicht, sondern prüft im Abstand von
+     * REJECT_POLL_MS im maintenance-Thread.
+     * @param transport die abgelehnte Verbindung
+     * @param deadline System.nanoTime(), ab dem auf jeden Fall geschlossen wird
+     */
+    private void closeWhenDrained(Transport transport, long deadline) {
+        try {
+            if(!transport.discardInput() && System.nanoTime() - deadline < 0) {
+                maintenance.schedule(() -> closeWhenDrained(transport, deadline),
+                        REJECT_POLL_MS, TimeUnit.MILLISECONDS);
+                return;
+            }
+        } catch(IOException | RejectedExecutionException e) {
+            // Client bereits weg oder Server beendet
+        }
+        lingering.decrementAndGet();
+        closeQuietly(transport);
+    }
+
+    /**
+     * @param transport zu schließende Verbindung
+     */
+    private static void closeQuietly(Transport transport) {
+        try {
+            transport.close();
+        } catch(IOException e) {
+            // Verbindung war bereits tot
+        }
+    }
+
     /**
      * Beendet Server
      */
     public void stopServer() {
         try {
-            server.close();
+            for(Acceptor a : acceptors) a.close();
         } catch(IOException e) {
             // Nothing to do
         } finally {
             pool.shutdown();
+            maintenance.shutdown();
+            indexer.interrupt();
         }
     }
 }
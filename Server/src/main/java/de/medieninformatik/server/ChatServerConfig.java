@@ -0,0 +1,280 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Chunks;
+
+/**
+ * Einstellungen des ChatServers.
+ * Die Standardwerte sind für einen kleinen Server gedacht und können
+ * vor dem Erzeugen des ChatServers mit den Settern angepasst werden.
+ * Puffergrößen von 0 bedeuten: Voreinstellung des Betriebssystems.
+ * Nachrichtengrößen sind in Zeichen angegeben.
+ */
+public class ChatServerConfig {
+    /**
+     * Umgang mit Nutzern, die ihr Sendekontingent überschreiten
+     */
+    public enum QuotaPolicy {
+        /** Nachricht verwerfen, der Nutzer bekommt einen Hinweis */
+        DROP,
+        /** Nachricht zurückhalten, bis das Kontingent reicht (bremst nur diesen Nutzer) */
+        DELAY,
+        /** Verbindung trennen, ohne RESUME: der Client muss sich neu anmelden */
+        DISCONNECT
+    }
+
+    private int backlog = 50;
+    private int maxConnections = 1000;
+    private double acceptsPerSecond = 100;
+    private int acceptBurst = 200;
+    private boolean tcpNoDelay = true;
+    private boolean keepAlive = true;
+    private int sendBufferSize = 0;
+    private int receiveBufferSize = 0;
+    private int maxChunkSize = Chunks.DEFAULT_CHUNK_SIZE;
+    private int maxPayloadSize = Chunks.DEFAULT_MAX_SIZE;
+    private int maxQueuedChunks = 256;
+    private int maxQueuedMessages = 1024;
+    private int searchIndexMaxDocs = 100_000;
+    private long presenceWindowMillis = 200;
+    private double messagesPerSecond = 20;
+    private int messageBurst = 40;
+    private double bytesPerSecond = 256 * 1024;
+    private int byteBurst = 1024 * 1024;
+    private QuotaPolicy quotaPolicy = QuotaPolicy.DROP;
+    private int maxPooledBuffers = 256;
+    private long sessionTimeoutMillis = 10 * 60 * 1000;
+
+    /**
+     * @return Länge der Warteschlange für noch nicht angenommene Verbindungen
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    public void setBacklog(int backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * @return maximale Anzahl gleichzeitiger Verbindungen
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return angenommene Verbindungen pro Sekunde (Token-Bucket-Rate)
+     */
+    public double getAcceptsPerSecond() {
+        return acceptsPerSecond;
+    }
+
+    public void setAcceptsPerSecond(double acceptsPerSecond) {
+        this.acceptsPerSecond = acceptsPerSecond;
+    }
+
+    /**
+     * @return Verbindungen, die kurzzeitig über der Rate angenommen werden
+     */
+    public int getAcceptBurst() {
+        return acceptBurst;
+    }
+
+    public void setAcceptBurst(int acceptBurst) {
+        this.acceptBurst = acceptBurst;
+    }
+
+    /**
+     * @return true falls TCP_NODELAY gesetzt wird (kein Nagle, kleine Nachrichten sofort)
+     */
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public void setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+    }
+
+    /**
+     * @return true falls SO_KEEPALIVE gesetzt wird (tote Verbindungen werden erkannt)
+     */
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * @return SO_SNDBUF in Bytes, 0 für Voreinstellung
+     */
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public void setSendBufferSize(int sendBufferSize) {
+        this.sendBufferSize = sendBufferSize;
+    }
+
+    /**
+     * @return SO_RCVBUF in Bytes, 0 für Voreinstellung
+     */
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public void setReceiveBufferSize(int receiveBufferSize) {
+        this.receiveBufferSize = receiveBufferSize;
+    }
+
+    /**
+     * @return maximale Größe einer einzelnen Nachricht bzw. eines Teilstücks
+     */
+    public int getMaxChunkSize() {
+        return maxChunkSize;
+    }
+
+    public void setMaxChunkSize(int maxChunkSize) {
+        this.maxChunkSize = maxChunkSize;
+    }
+
+    /**
+     * @return maximale Größe einer in Teilstücken übertragenen Nachricht
+     */
+    public int getMaxPayloadSize() {
+        return maxPayloadSize;
+    }
+
+    public void setMaxPayloadSize(int maxPayloadSize) {
+        this.maxPayloadSize = maxPayloadSize;
+    }
+
+    /**
+     * @return maximale Anzahl wartender Teilstücke je Empfänger
+     */
+    public int getMaxQueuedChunks() {
+        return maxQueuedChunks;
+    }
+
+    public void setMaxQueuedChunks(int maxQueuedChunks) {
+        this.maxQueuedChunks = maxQueuedChunks;
+    }
+
+    /**
+     * @return maximale Anzahl wartender Nachrichten je Empfänger; wer so weit
+     *  zurückliegt, wird getrennt und holt beim Wiederanmelden (RESUME) auf
+     */
+    public int getMaxQueuedMessages() {
+        return maxQueuedMessages;
+    }
+
+    public void setMaxQueuedMessages(int maxQueuedMessages) {
+        this.maxQueuedMessages = maxQueuedMessages;
+    }
+
+    /**
+     * @return maximale Anzahl Nachrichten im Suchindex
+     */
+    public int getSearchIndexMaxDocs() {
+        return searchIndexMaxDocs;
+    }
+
+    public void setSearchIndexMaxDocs(int searchIndexMaxDocs) {
+        this.searchIndexMaxDocs = searchIndexMaxDocs;
+    }
+
+    /**
+     * @return Zeitfenster, in dem An- und Abmeldungen gebündelt werden
+     */
+    public long getPresenceWindowMillis() {
+        return presenceWindowMillis;
+    }
+
+    public void setPresenceWindowMillis(long presenceWindowMillis) {
+        this.presenceWindowMillis = presenceWindowMillis;
+    }
+
+    /**
+     * @return Nachrichten pro Sekunde und Nutzer (SEND, PRIVATE, Übertragungen)
+     */
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    public void setMessagesPerSecond(double messagesPerSecond) {
+        this.messagesPerSecond = messagesPerSecond;
+    }
+
+    /**
+     * @return Nachrichten, die ein Nutzer kurzzeitig über der Rate senden darf
+     */
+    public int getMessageBurst() {
+        return messageBurst;
+    }
+
+    public void setMessageBurst(int messageBurst) {
+        this.messageBurst = messageBurst;
+    }
+
+    /**
+     * @return Bytes (UTF-8) pro Sekunde und Nutzer
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    public void setBytesPerSecond(double bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @return Bytes, die ein Nutzer kurzzeitig über der Rate senden darf
+     */
+    public int getByteBurst() {
+        return byteBurst;
+    }
+
+    public void setByteBurst(int byteBurst) {
+        this.byteBurst = byteBurst;
+    }
+
+    /**
+     * @return Verhalten bei überschrittenem Sendekontingent
+     */
+    public QuotaPolicy getQuotaPolicy() {
+        return quotaPolicy;
+    }
+
+    public void setQuotaPolicy(QuotaPolicy quotaPolicy) {
+        this.quotaPolicy = quotaPolicy;
+    }
+
+    /**
+     * @return freie Direct Buffers, die je Größenklasse für kodierte
+     *  Nachrichten vorgehalten werden
+     */
+    public int getMaxPooledBuffers() {
+        return maxPooledBuffers;
+    }
+
+    public void setMaxPooledBuffers(int maxPooledBuffers) {
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    /**
+     * @return Zeit nach einem Verbindungsabbruch, in der ein Nutzer die
+     *  Sitzung mit RESUME fortsetzen kann
+     */
+    public long getSessionTimeoutMillis() {
+        return sessionTimeoutMillis;
+    }
+
+    public void setSessionTimeoutMillis(long sessionTimeoutMillis) {
+        this.sessionTimeoutMillis = sessionTimeoutMillis;
+    }
+}
@@ -0,0 +1,98 @@
+package de.medieninformatik.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Zustand eines Nutzers, der die einzelne Verbindung überdauert.
+ * Bei JOIN vergibt der Server ein zufälliges Token, das der Client nur
+ * über seine eigene Verbindung bekommt. RESUME wird nur mit diesem Token
+ * angenommen: wer nur den Namen kennt, kann weder die Verbindung des
+ * Nutzers übernehmen noch sich dessen private Nachrichten nachliefern lassen.
+ * Die Tokens liegen nur im Speicher, nach einem Neustart des Servers ist
+ * also jedes RESUME ungültig und der Client meldet sich neu an.
+ * Auch das Sendekontingent gehört zur Sitzung: Ab- und wieder Anmelden
+ * füllt es nicht auf, die Sitzung bleibt mindestens so lange erhalten,
+ * bis das Kontingent ohnehin wieder voll wäre (siehe expired).
+ */
+class ChatSession {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final int TOKEN_BYTES = 16;
+
+    private final SendQuota quota;
+    private volatile String token; // null nach Abmeldung mit LEAVE
+    private volatile boolean attached;
+    private volatile long detachedAt; // System.nanoTime() beim Trennen
+
+    /**
+     * Konstruktor
+     * @param quota Sendekontingent des Nutzers
+     */
+    ChatSession(SendQuota quota) {
+        this.quota = quota;
+    }
+
+    /**
+     * @return Sendekontingent des Nutzers, über alle Verbindungen hinweg
+     */
+    SendQuota quota() {
+        return quota;
+    }
+
+    /**
+     * Vergibt ein neues Token, ein altes wird damit ungültig
+     * @return Token für RESUME
+     */
+    String newToken() {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(bytes);
+        token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        return token;
+    }
+
+    /**
+     * Vergleicht in konstanter Zeit, die Laufzeit verrät also nicht,
+     * wie viele Zeichen schon stimmen
+     * @param candidate Token aus der RESUME-Nachricht oder null
+     * @return true falls es das aktuelle Token ist
+     */
+    boolean matches(String candidate) {
+        String current = token;
+        return current != null && candidate != null && MessageDigest.isEqual(
+                current.getBytes(StandardCharsets.UTF_8), candidate.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Abmeldung mit LEAVE: die Sitzung kann nicht mehr fortgesetzt werden
+     */
+    void invalidate() {
+        token = null;
+    }
+
+    /**
+     * Der Nutzer ist (wieder) mit einer Verbindung angemeldet
+     */
+    void attach() {
+        attached = true;
+    }
+
+    /**
+     * Die Verbindung des Nutzers ist beendet, ab jetzt läuft die Frist
+     */
+    void detach() {
+        detachedAt = System.nanoTime();
+        attached = false;
+    }
+
+    /**
+     * @param timeoutNanos Frist nach dem Trennen, mindestens aber bis das
+     *  Kontingent wieder voll ist
+     * @return true falls der Nutzer länger als die Frist getrennt ist
+     */
+    boolean expired(long timeoutNanos) {
+        long timeout = Math.max(timeoutNanos, quota.refillNanos());
+        return !attached && System.nanoTime() - detachedAt > timeout;
+    }
+}
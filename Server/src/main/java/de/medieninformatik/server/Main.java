@@ -1,8 +1,11 @@
 package de.medieninformatik.server;
 
 
+import de.medieninformatik.transport.UnixAcceptor;
+import de.medieninformatik.web.StaticAssetServlet;
 import org.apache.catalina.Context;
 import org.apache.catalina.Service;
+import org.apache.catalina.Wrapper;
 import org.apache.catalina.connector.Connector;
 import org.apache.catalina.startup.Tomcat;
 
@@ -19,6 +22,7 @@ public class Main {
     public static void main(String[] args) throws Exception {
         Scanner scanner = new Scanner(System.in);
         final int port = 8080;
+        final int chatPort = 60000;
         String webapps = "NewsWS";
         String doc = "web";
 
@@ -30,6 +34,27 @@ public class Main {
         Path docBase = Paths.get(doc).toAbsolutePath();
         Context ctx = tomcat.addWebapp(webapps, docBase.toString());
 
+        // statische Dateien vorkomprimiert aus dem Speicher, mit ETag und 304
+        StaticAssetServlet assets = new StaticAssetServlet(docBase);
+        Tomcat.addServlet(ctx, "assets", assets);
+        for(String path : assets.paths())
+            ctx.addServletMappingDecoded(path, "assets");
+
+        // Chat-Server, dessen Verlauf unter /search durchsucht werden kann
+        ChatServerConfig config = new ChatServerConfig();
+        ChatServer chat = new ChatServer(chatPort, config);
+        // optional zusätzlich über einen Unix-Domain-Socket, z.B. -Dchat.socket=/tmp/chat.sock
+        String chatSocket = System.getProperty("chat.socket");
+        if(chatSocket != null)
+            chat.addAcceptor(new UnixAcceptor(Path.of(chatSocket), config.getBacklog()));
+        Tomcat.addServlet(ctx, "search", new SearchServlet(chat.getSearchIndex()));
+        ctx.addServletMappingDecoded("/search", "search");
+
+        // News-Feed als Server-Sent Events für Clients ohne WebSocket
+        Wrapper events = Tomcat.addServlet(ctx, "events", new NewsEventServlet(Nachricht.feed()));
+        events.setAsyncSupported(true);
+        ctx.addServletMappingDecoded("/events", "events");
+
         Connector con = new Connector();
         con.setPort(port);
 
@@ -42,6 +67,9 @@ public class Main {
                 InetAddress.getLocalHost().getHostAddress() + ":" +
                 con.getPort() + ctx.getPath();
         System.out.printf("URL: %s%n", url);
+        chat.start();
+        System.out.printf("Chat-Server: Port %d, Suche: %s/search?q=...%n", chatPort, url);
+        System.out.printf("News als Server-Sent Events: %s/events%n", url);
 
         Thread t = new Thread(Nachricht.quelle());
         t.start();
@@ -49,6 +77,7 @@ public class Main {
         while(!command.equals(scanner.nextLine()));
 
         t.interrupt();
+        chat.stopServer();
         tomcat.stop();
         tomcat.destroy();
     }
@@ -6,7 +6,6 @@ import jakarta.websocket.server.ServerEndpoint;
 import java.io.IOException;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -20,9 +19,19 @@ public class Nachricht {
     private static List<Session> verbindung = new CopyOnWriteArrayList<>();
 
     /**
-     * Stores users and their session ID's
+     * Same messages for Server-Sent Events subscribers (see NewsEventServlet),
+     * keeps the last events for Last-Event-ID resume
      */
-    private static HashMap<String, String> users = new HashMap<>();
+    private static final NewsFeed feed = new NewsFeed(1000);
+
+    private static DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    /**
+     * @return the feed behind the SSE endpoint
+     */
+    static NewsFeed feed() {
+        return feed;
+    }
 
     /**
      * Collect all connected users in a list
@@ -56,22 +65,44 @@ public class Nachricht {
         System.out.println("Nachricht (Server): Got message: " + message);
     }
 
+    /**
+     * Produces a message every 1-5 seconds for all WebSocket sessions
+     * and SSE subscribers. Paced like the TCServer source, an unpaced
+     * loop would flood the non-blocking SSE streams.
+     * @return the source, to be run in its own thread
+     */
     public static Runnable quelle() {
         return () -> {
+            AtomicInteger counter = new AtomicInteger();
+            Random r = new Random();
             while(!Thread.interrupted()) {
-                String nachricht = "[Nachricht]";
-                verbindung.forEach( s -> {
-                    try {
-                        s.getBasicRemote().sendText(nachricht);
-                    } catch(IOException e) {
-                        verbindung.remove(s);
+                try {
+                    Thread.sleep(1000*(1+r.nextInt(5)));
+                    LocalTime current = LocalTime.now();
+                    String nachricht = String.format("[Nachricht um %s] Counter: %d",
+                            current.format(fmt), counter.incrementAndGet());
+                    feed.publish(nachricht);
+                    verbindung.forEach( s -> {
                         try {
-                            s.close();
-                        } catch(IOException e1) {
-                            //
+                            s.getBasicRemote().sendText(nachricht);
+                        } catch(IOException e) {
+                            ChatEvents.NewsSendFailure failure = new ChatEvents.NewsSendFailure();
+                            if(failure.shouldCommit()) {
+                                failure.session = s.getId();
+                                failure.message = e.getMessage();
+                                failure.commit();
+                            }
+                            verbindung.remove(s);
+                            try {
+                                s.close();
+                            } catch(IOException e1) {
+                                //
+                            }
                         }
-                    }
-                });
+                    });
+                } catch(InterruptedException e) {
+                    break;
+                }
             }
         };
     }
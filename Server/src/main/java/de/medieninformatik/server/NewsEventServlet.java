@@ -0,0 +1,182 @@
+package de.medieninformatik.server;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+/**
+ * Der News-Feed als Server-Sent Events für Clients ohne WebSocket:
+ * GET /events (Header Last-Event-ID oder Parameter lastEventId)
+ * Der Request wird asynchron weitergeführt und nicht-blockierend
+ * beschrieben, ein Abonnent belegt also keinen Request-Thread.
+ */
+public class NewsEventServlet extends HttpServlet {
+    /**
+     * Wartezeit in ms, die der Browser vor dem Neuverbinden einhalten soll
+     */
+    private static final int RETRY_MS = 3000;
+
+    /**
+     * Maximale Anzahl noch nicht geschriebener Ereignisse je Abonnent.
+     * Wer so weit zurückliegt, wird getrennt und holt beim Neuverbinden
+     * über Last-Event-ID auf.
+     */
+    private static final int MAX_PENDING = 256;
+
+    private final transient NewsFeed feed;
+
+    /**
+     * Konstruktor
+     * @param feed Quelle der Ereignisse
+     */
+    NewsEventServlet(NewsFeed feed) {
+        this.feed = feed;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        long lastEventId;
+        try {
+            lastEventId = lastEventId(req);
+        } catch(NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Last-Event-ID ist keine Zahl");
+            return;
+        }
+        resp.setContentType("text/event-stream");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Cache-Control", "no-cache");
+        resp.setHeader("X-Accel-Buffering", "no"); // Proxies sollen nicht puffern
+
+        AsyncContext async = req.startAsync();
+        async.setTimeout(0); // Verbindung bleibt offen, bis der Client geht
+        Subscriber subscriber = new Subscriber(async, resp.getOutputStream());
+        async.addListener(subscriber);
+        subscriber.out.setWriteListener(subscriber);
+        feed.subscribe(lastEventId, subscriber);
+    }
+
+    /**
+     * Liest die zuletzt empfangene ID. EventSource schickt sie beim
+     * Neuverbinden als Header, manche Polyfills nur als Parameter.
+     * @param req Request
+     * @return ID oder 0
+     */
+    private static long lastEventId(HttpServletRequest req) {
+        String id = req.getHeader("Last-Event-ID");
+        if(id == null) id = req.getParameter("lastEventId");
+        return id == null || id.isBlank() ? 0 : Long.parseLong(id.trim());
+    }
+
+    /**
+     * Ein SSE-Client. Ereignisse aus dem Feed werden nur eingereiht;
+     * geschrieben wird, solange der Ausgabestrom bereit ist. Ist er es
+     * nicht, ruft der Container später onWritePossible() auf.
+     */
+    private class Subscriber implements Consumer<NewsFeed.Event>, WriteListener, AsyncListener {
+        private final AsyncContext async;
+        private final ServletOutputStream out;
+        private final Queue<byte[]> pending = new ArrayDeque<>();
+        private boolean closed;
+
+        Subscriber(AsyncContext async, ServletOutputStream out) {
+            this.async = async;
+            this.out = out;
+            pending.add(("retry: " + RETRY_MS + "\n\n").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /**
+         * Vom Feed aufgerufen (auch beim Nachholen), darf nicht blockieren
+         * @param event neues Ereignis
+         */
+        @Override
+        public void accept(NewsFeed.Event event) {
+            boolean slow;
+            synchronized(this) {
+                if(closed) return;
+                slow = pending.size() >= MAX_PENDING;
+                if(!slow) pending.add(event.bytes());
+            }
+            if(slow) {
+                close();
+                return;
+            }
+            try {
+                drain();
+            } catch(IOException e) {
+                close();
+            }
+        }
+
+        @Override
+        public void onWritePossible() throws IOException {
+            drain();
+        }
+
+        /**
+         * Schreibt, bis nichts mehr ansteht oder der Strom nicht mehr bereit ist
+         * @throws IOException
+         */
+        private synchronized void drain() throws IOException {
+            while(!closed && !pending.isEmpty() && out.isReady()) {
+                out.write(pending.poll());
+                // sofort senden, sonst bleibt das Ereignis im Response-Puffer
+                if(pending.isEmpty() && out.isReady()) out.flush();
+            }
+        }
+
+        /**
+         * Beendet die Verbindung und meldet den Abonnenten ab.
+         * Der Feed wird außerhalb der eigenen Sperre angesprochen,
+         * weil publish() in umgekehrter Reihenfolge sperrt.
+         */
+        private void close() {
+            synchronized(this) {
+                if(closed) return;
+                closed = true;
+                pending.clear();
+            }
+            feed.unsubscribe(this);
+            async.complete();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            close();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            synchronized(this) {
+                closed = true;
+                pending.clear();
+            }
+            feed.unsubscribe(this);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // keine erneute Weiterführung
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package de.medieninformatik.server;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Verteilt die Nachrichten aus Nachricht.quelle() an die Abonnenten
+ * des Server-Sent-Events-Endpunkts. Die letzten Ereignisse werden
+ * vorgehalten, damit ein Client nach einem Abbruch mit Last-Event-ID
+ * dort weitermachen kann, wo er aufgehört hat.
+ */
+class NewsFeed {
+    /**
+     * Ein Ereignis mit fortlaufender ID. Die SSE-Darstellung wird einmal
+     * erzeugt und von allen Abonnenten gemeinsam benutzt.
+     * @param id Event-ID
+     * @param data Text der Nachricht
+     * @param bytes fertig kodierter SSE-Block
+     */
+    record Event(long id, String data, byte[] bytes) {
+        Event(long id, String data) {
+            this(id, data, encode(id, data));
+        }
+
+        private static byte[] encode(long id, String data) {
+            StringBuilder sb = new StringBuilder("id: ").append(id).append('\n');
+            // jede Zeile braucht ein eigenes data-Feld
+            for(String line : data.split("\r\n|\r|\n", -1)) {
+                sb.append("data: ").append(line).append('\n');
+            }
+            return sb.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final int capacity;
+    private final Deque<Event> recent;
+    // Abonnenten können sich während publish() abmelden
+    private final List<Consumer<Event>> subscribers = new CopyOnWriteArrayList<>();
+    private long lastId;
+
+    /**
+     * Konstruktor
+     * @param capacity Anzahl der Ereignisse, die für Last-Event-ID vorgehalten werden
+     */
+    NewsFeed(int capacity) {
+        this.capacity = capacity;
+        this.recent = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Veröffentlicht eine Nachricht an alle Abonnenten.
+     * Die Abonnenten dürfen hier nicht blockieren.
+     * @param data Text der Nachricht
+     * @return das erzeugte Ereignis
+     */
+    synchronized Event publish(String data) {
+        Event event = new Event(++lastId, data);
+        if(recent.size() == capacity) recent.removeFirst();
+        recent.addLast(event);
+        for(Consumer<Event> s : subscribers) s.accept(event);
+        return event;
+    }
+
+    /**
+     * Meldet einen Abonnenten an. Zuerst bekommt er alle vorgehaltenen
+     * Ereignisse nach lastEventId, danach die neuen, ohne Lücke und ohne
+     * Dopplung.
+     * @param lastEventId zuletzt empfangene ID, 0 für keine
+     * @param subscriber nimmt die Ereignisse entgegen, darf nicht blockieren
+     */
+    synchronized void subscribe(long lastEventId, Consumer<Event> subscriber) {
+        if(lastEventId > 0) {
+            for(Event e : recent) {
+                if(e.id() > lastEventId) subscriber.accept(e);
+            }
+        }
+        subscribers.add(subscriber);
+    }
+
+    /**
+     * Meldet einen Abonnenten ab
+     * @param subscriber der Abonnent
+     */
+    synchronized void unsubscribe(Consumer<Event> subscriber) {
+        subscribers.remove(subscriber);
+    }
+}
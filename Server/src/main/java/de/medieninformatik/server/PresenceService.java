@@ -0,0 +1,68 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Message;
+import de.medieninformatik.Message.Presence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Sammelt An- und Abmeldungen und verteilt sie gebündelt.
+ * Statt einer Nachricht je JOIN/LEAVE an alle Nutzer wird in jedem
+ * Zeitfenster höchstens ein Delta verschickt. Meldet sich ein Nutzer im
+ * Fenster mehrfach an und ab, zählt nur der letzte Zustand. Der wird auch
+ * dann verschickt, wenn er dem Zustand vor dem Fenster entspricht: wer sich
+ * zwischendurch angemeldet hat, bekam einen Snapshot mit dem Zwischenstand
+ * und wäre sonst nie korrigiert worden. Ein doppeltes '+' oder '-' schadet
+ * dagegen nicht, Deltas lassen sich beliebig oft anwenden.
+ */
+class PresenceService {
+    private final Map<String, Boolean> pending; // Nutzer -> angemeldet?
+    private final Consumer<Message> broadcast;
+
+    /**
+     * Konstruktor
+     * @param broadcast verteilt das Delta an alle Nutzer
+     */
+    public PresenceService(Consumer<Message> broadcast) {
+        this.pending = new LinkedHashMap<>();
+        this.broadcast = broadcast;
+    }
+
+    /**
+     * @param user neu angemeldeter Nutzer
+     */
+    public synchronized void joined(String user) {
+        change(user, true);
+    }
+
+    /**
+     * @param user abgemeldeter Nutzer
+     */
+    public synchronized void left(String user) {
+        change(user, false);
+    }
+
+    private void change(String user, boolean online) {
+        pending.remove(user); // neu einfügen: Reihenfolge der letzten Änderung
+        pending.put(user, online);
+    }
+
+    /**
+     * Verschickt die gesammelten Änderungen als ein Delta.
+     * Wird am Ende jedes Zeitfensters aufgerufen.
+     */
+    public void flush() {
+        List<String> joined = new ArrayList<>();
+        List<String> left = new ArrayList<>();
+        synchronized(this) {
+            if(pending.isEmpty()) return;
+            pending.forEach((user, online) -> (online ? joined : left).add(user));
+            pending.clear();
+        }
+        broadcast.accept(Presence.delta(joined, left));
+    }
+}
@@ -0,0 +1,307 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Message;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ToLongFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Invertierter Index über die Chat-Nachrichten (Nutzer und Inhalt).
+ *
+ * Neue Nachrichten landen in einem kleinen veränderlichen Segment, das
+ * nach SEGMENT_SIZE Nachrichten versiegelt wird. Versiegelte Segmente
+ * sind unveränderlich und werden regelmäßig mit {@link #merge()} zu
+ * größeren Segmenten zusammengefasst, damit eine Suche nur wenige
+ * Segmente durchlaufen muss. Der Speicher ist begrenzt: übersteigt die
+ * Anzahl der Nachrichten maxDocs, wird das älteste Segment verworfen.
+ *
+ * Eine Anfrage besteht aus Wörtern (alle müssen vorkommen) und optional
+ * "user:name". Treffer werden nach Häufigkeit der Wörter und dann nach
+ * Aktualität sortiert.
+ */
+class SearchIndex {
+    private static final int SEGMENT_SIZE = 1024;
+    private static final Pattern SPLIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final String USER_PREFIX = "user:";
+
+    /**
+     * Treffer einer Suche
+     * @param message die gefundene Nachricht
+     * @param score Anzahl der Vorkommen der gesuchten Wörter
+     */
+    public record Hit(Message message, int score) {
+    }
+
+    /**
+     * Posting-Liste eines Wortes: Sequenznummern (aufsteigend) und
+     * Häufigkeit des Wortes in der jeweiligen Nachricht
+     */
+    private record Postings(long[] seqs, int[] freqs) {
+        int find(long seq) {
+            return Arrays.binarySearch(seqs, seq);
+        }
+    }
+
+    /**
+     * Unveränderliches Segment, deckt einen zusammenhängenden
+     * Bereich von Sequenznummern ab
+     */
+    private record Segment(long[] seqs, Message[] docs, Map<String, Postings> terms) {
+        int size() {
+            return seqs.length;
+        }
+    }
+
+    /**
+     * Veränderliches Segment für neue Nachrichten
+     */
+    private static class ActiveSegment {
+        private final List<Message> docs = new ArrayList<>();
+        private final Map<String, List<long[]>> terms = new HashMap<>(); // Wort -> [seq, freq]
+
+        void add(Message msg, Map<String, Integer> freqs) {
+            docs.add(msg);
+            freqs.forEach((term, freq) ->
+                    terms.computeIfAbsent(term, t -> new ArrayList<>()).add(new long[]{msg.seq(), freq}));
+        }
+
+        Segment seal() {
+            long[] seqs = new long[docs.size()];
+            for(int i = 0; i < seqs.length; i++) seqs[i] = docs.get(i).seq();
+            Map<String, Postings> sealed = new HashMap<>(terms.size() * 2);
+            terms.forEach((term, list) -> {
+                long[] s = new long[list.size()];
+                int[] f = new int[list.size()];
+                for(int i = 0; i < s.length; i++) {
+                    s[i] = list.get(i)[0];
+                    f[i] = (int) list.get(i)[1];
+                }
+                sealed.put(term, new Postings(s, f));
+            });
+            return new Segment(seqs, docs.toArray(new Message[0]), sealed);
+        }
+
+        /**
+         * Sucht direkt in diesem Segment, ohne es zu versiegeln oder zu
+         * kopieren. Nur unter der Sperre des Index aufrufen; das Segment
+         * hat höchstens SEGMENT_SIZE Nachrichten, die Sperre ist also
+         * nur kurz belegt.
+         */
+        void search(List<String> query, int k, PriorityQueue<Hit> top) {
+            List<List<long[]>> lists = new ArrayList<>(query.size());
+            List<long[]> driver = null;
+            for(String term : query) {
+                List<long[]> list = terms.get(term);
+                if(list == null) return; // ein Wort fehlt im ganzen Segment
+                lists.add(list);
+                if(driver == null || list.size() < driver.size()) driver = list;
+            }
+            next:
+            for(long[] posting : driver) {
+                long seq = posting[0];
+                int score = 0;
+                for(List<long[]> list : lists) {
+                    long[] p = list == driver ? posting : find(list, seq, e -> e[0]);
+                    if(p == null) continue next;
+                    score += (int) p[1];
+                }
+                top.offer(new Hit(find(docs, seq, Message::seq), score));
+                if(top.size() > k) top.poll();
+            }
+        }
+    }
+
+    private final int maxDocs;
+    private final int maxSegmentSize;
+    private ActiveSegment active;
+    private volatile List<Segment> segments; // unveränderliche Liste, älteste zuerst
+
+    /**
+     * Konstruktor
+     * @param maxDocs maximale Anzahl indizierter Nachrichten
+     */
+    public SearchIndex(int maxDocs) {
+        this.maxDocs = maxDocs;
+        // kein Segment größer als 1/8 des Index: Verwerfen kostet nie zu viel
+        this.maxSegmentSize = Math.max(SEGMENT_SIZE, maxDocs / 8);
+        this.active = new ActiveSegment();
+        this.segments = List.of();
+    }
+
+    /**
+     * Nimmt eine Nachricht in den Index auf. Nachrichten müssen in
+     * aufsteigender Sequenz-Reihenfolge hinzugefügt werden.
+     * @param msg Nachricht mit Sequenznummer
+     */
+    public void add(Message msg) {
+        Map<String, Integer> freqs = tokenize(msg); // ohne Sperre
+        synchronized(this) {
+            active.add(msg, freqs);
+            if(active.docs.size() < SEGMENT_SIZE) return;
+            List<Segment> list = new ArrayList<>(segments);
+            list.add(active.seal());
+            active = new ActiveSegment();
+            int total = list.stream().mapToInt(Segment::size).sum();
+            while(total > maxDocs && !list.isEmpty()) total -= list.remove(0).size();
+            segments = Collections.unmodifiableList(list);
+        }
+    }
+
+    /**
+     * Fasst benachbarte kleine Segmente zusammen, solange das Ergebnis
+     * nicht größer als maxSegmentSize wird. Wird regelmäßig von einem
+     * Hintergrund-Thread aufgerufen; das Zusammenfassen selbst läuft
+     * ohne Sperre, nur das Austauschen der Segmentliste ist synchronisiert.
+     */
+    public void merge() {
+        while(true) {
+            List<Segment> snapshot = segments;
+            int best = -1;
+            for(int i = 0; i + 1 < snapshot.size(); i++) {
+                int size = snapshot.get(i).size() + snapshot.get(i + 1).size();
+                if(size > maxSegmentSize) continue;
+                if(best < 0 || size < snapshot.get(best).size() + snapshot.get(best + 1).size()) best = i;
+            }
+            if(best < 0) return;
+            Segment older = snapshot.get(best);
+            Segment newer = snapshot.get(best + 1);
+            Segment merged = merge(older, newer);
+            synchronized(this) {
+                List<Segment> list = new ArrayList<>(segments);
+                int i = list.indexOf(older); // kann inzwischen verworfen sein
+                if(i < 0 || i + 1 >= list.size() || list.get(i + 1) != newer) continue;
+                list.set(i, merged);
+                list.remove(i + 1);
+                segments = Collections.unmodifiableList(list);
+            }
+        }
+    }
+
+    /**
+     * Sucht die besten k Treffer. Die Sperre des Index wird nur für das
+     * veränderliche Segment gehalten, die versiegelten Segmente werden
+     * ohne Sperre durchsucht. Warten muss höchstens der Index-Thread des
+     * Chat-Servers, nie der Versand.
+     * @param query Wörter und optional user:name
+     * @param k maximale Anzahl Treffer
+     * @return Treffer, bester zuerst
+     */
+    public List<Hit> search(String query, int k) {
+        List<String> terms = new ArrayList<>();
+        for(String word : query.toLowerCase(Locale.ROOT).split("\\s+")) {
+            if(word.startsWith(USER_PREFIX) && word.length() > USER_PREFIX.length()) {
+                terms.add(word);
+            } else {
+                for(String t : SPLIT.split(word)) if(!t.isEmpty()) terms.add(t);
+            }
+        }
+        if(terms.isEmpty() || k <= 0) return List.of();
+
+        Comparator<Hit> order = Comparator.comparingInt(Hit::score)
+                .thenComparingLong(h -> h.message().seq());
+        PriorityQueue<Hit> top = new PriorityQueue<>(order); // kleinster Treffer oben
+        List<Segment> sealed;
+        synchronized(this) { // beides zum selben Zeitpunkt, sonst fehlt ein gerade versiegeltes Segment
+            sealed = segments;
+            active.search(terms, k, top);
+        }
+        for(Segment segment : sealed) search(segment, terms, k, top);
+
+        List<Hit> hits = new ArrayList<>(top);
+        hits.sort(order.reversed());
+        return hits;
+    }
+
+    /**
+     * Sucht in einem Segment: die kürzeste Posting-Liste wird durchlaufen,
+     * in den anderen wird binär gesucht.
+     */
+    private static void search(Segment segment, List<String> terms, int k, PriorityQueue<Hit> top) {
+        Postings[] lists = new Postings[terms.size()];
+        int shortest = 0;
+        for(int i = 0; i < lists.length; i++) {
+            lists[i] = segment.terms().get(terms.get(i));
+            if(lists[i] == null) return; // ein Wort fehlt im ganzen Segment
+            if(lists[i].seqs().length < lists[shortest].seqs().length) shortest = i;
+        }
+        Postings driver = lists[shortest];
+        next:
+        for(int d = 0; d < driver.seqs().length; d++) {
+            long seq = driver.seqs()[d];
+            int score = 0;
+            for(Postings p : lists) {
+                int pos = p == driver ? d : p.find(seq);
+                if(pos < 0) continue next;
+                score += p.freqs()[pos];
+            }
+            int doc = Arrays.binarySearch(segment.seqs(), seq);
+            top.offer(new Hit(segment.docs()[doc], score));
+            if(top.size() > k) top.poll();
+        }
+    }
+
+    /**
+     * Binäre Suche in einer nach Sequenznummer sortierten Liste
+     * @param list Liste, aufsteigend nach seq
+     * @param seq gesuchte Sequenznummer
+     * @param key liefert die Sequenznummer eines Elements
+     * @return Element oder null
+     */
+    private static <T> T find(List<T> list, long seq, ToLongFunction<T> key) {
+        int lo = 0, hi = list.size() - 1;
+        while(lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long s = key.applyAsLong(list.get(mid));
+            if(s < seq) lo = mid + 1;
+            else if(s > seq) hi = mid - 1;
+            else return list.get(mid);
+        }
+        return null;
+    }
+
+    /**
+     * Fasst zwei benachbarte Segmente zusammen (older vor newer)
+     */
+    private static Segment merge(Segment older, Segment newer) {
+        long[] seqs = new long[older.size() + newer.size()];
+        System.arraycopy(older.seqs(), 0, seqs, 0, older.size());
+        System.arraycopy(newer.seqs(), 0, seqs, older.size(), newer.size());
+        Message[] docs = new Message[seqs.length];
+        System.arraycopy(older.docs(), 0, docs, 0, older.size());
+        System.arraycopy(newer.docs(), 0, docs, older.size(), newer.size());
+
+        Map<String, Postings> terms = new HashMap<>(older.terms());
+        newer.terms().forEach((term, p) -> terms.merge(term, p, (a, b) -> {
+            long[] s = Arrays.copyOf(a.seqs(), a.seqs().length + b.seqs().length);
+            System.arraycopy(b.seqs(), 0, s, a.seqs().length, b.seqs().length);
+            int[] f = Arrays.copyOf(a.freqs(), a.freqs().length + b.freqs().length);
+            System.arraycopy(b.freqs(), 0, f, a.freqs().length, b.freqs().length);
+            return new Postings(s, f);
+        }));
+        return new Segment(seqs, docs, terms);
+    }
+
+    /**
+     * Zerlegt Nutzer und Inhalt in Wörter (klein geschrieben)
+     * @return Wort -> Häufigkeit
+     */
+    private static Map<String, Integer> tokenize(Message msg) {
+        Map<String, Integer> freqs = new HashMap<>();
+        if(msg.user() != null) freqs.put(USER_PREFIX + msg.user().toLowerCase(Locale.ROOT), 1);
+        if(msg.content() != null) {
+            for(String t : SPLIT.split(msg.content().toLowerCase(Locale.ROOT))) {
+                if(!t.isEmpty()) freqs.merge(t, 1, Integer::sum);
+            }
+        }
+        return freqs;
+    }
+}
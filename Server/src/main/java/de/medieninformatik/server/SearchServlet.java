@@ -0,0 +1,87 @@
+package de.medieninformatik.server;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Suche im Chat-Verlauf über HTTP:
+ * GET /search?q=wort+user:name&k=10
+ * Antwortet mit den besten k Treffern als JSON.
+ */
+public class SearchServlet extends HttpServlet {
+    private static final int DEFAULT_K = 10;
+    private static final int MAX_K = 100;
+
+    private final transient SearchIndex index;
+
+    /**
+     * Konstruktor
+     * @param index der zu durchsuchende Index
+     */
+    SearchServlet(SearchIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String query = req.getParameter("q");
+        if(query == null || query.isBlank()) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter q fehlt");
+            return;
+        }
+        int k = DEFAULT_K;
+        try {
+            if(req.getParameter("k") != null) k = Integer.parseInt(req.getParameter("k"));
+        } catch(NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Parameter k ist keine Zahl");
+            return;
+        }
+        k = Math.max(1, Math.min(k, MAX_K));
+
+        long start = System.nanoTime();
+        List<SearchIndex.Hit> hits = index.search(query, k);
+        double tookMs = (System.nanoTime() - start) / 1e6;
+
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        PrintWriter out = resp.getWriter();
+        out.printf(Locale.ROOT, "{\"query\":%s,\"tookMs\":%.3f,\"hits\":[", json(query), tookMs);
+        for(int i = 0; i < hits.size(); i++) {
+            SearchIndex.Hit hit = hits.get(i);
+            out.printf(Locale.ROOT, "%s{\"seq\":%d,\"score\":%d,\"user\":%s,\"content\":%s}",
+                    i > 0 ? "," : "", hit.message().seq(), hit.score(),
+                    json(hit.message().user()), json(hit.message().content()));
+        }
+        out.print("]}");
+    }
+
+    /**
+     * Erzeugt ein JSON-String-Literal
+     * @param s Text oder null
+     * @return Literal in Anführungszeichen bzw. null
+     */
+    private static String json(String s) {
+        if(s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for(char c : s.toCharArray()) {
+            switch(c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if(c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
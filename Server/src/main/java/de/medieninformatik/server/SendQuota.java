@@ -0,0 +1,49 @@
+package de.medieninformatik.server;
+
+/**
+ * Sendekontingent eines Nutzers: Nachrichten pro Sekunde und Bytes pro
+ * Sekunde, je ein TokenBucket. Eine Nachricht an alle wird N-mal
+ * geschrieben, deshalb wird vor dem Verteilen geprüft.
+ * Ohne Sperren; die Buckets sind jeweils ein einzelner AtomicLong.
+ */
+class SendQuota {
+    private final TokenBucket messages;
+    private final TokenBucket bytes;
+
+    /**
+     * Konstruktor
+     * @param config Raten und Bursts für Nachrichten und Bytes
+     */
+    SendQuota(ChatServerConfig config) {
+        this.messages = new TokenBucket(config.getMessagesPerSecond(), config.getMessageBurst());
+        this.bytes = new TokenBucket(config.getBytesPerSecond(), config.getByteBurst());
+    }
+
+    /**
+     * Entnimmt das Kontingent für eine Nachricht, falls beide Buckets
+     * genug enthalten. Sonst wird nichts entnommen.
+     * @param count Anzahl Nachrichten (0 für Teilstücke außer dem letzten)
+     * @param size Größe in Bytes
+     * @return 0 falls entnommen, sonst Wartezeit in Nanosekunden
+     */
+    long tryAcquire(int count, long size) {
+        long wait = Math.max(count > 0 ? messages.nanosUntil(count) : 0, bytes.nanosUntil(size));
+        if(wait > 0) return wait;
+        // Derselbe Nutzer sendet selten über zwei Verbindungen gleichzeitig;
+        // verliert er hier ein Rennen, wartet er eben etwas länger
+        if(count > 0 && !messages.tryAcquire(count)) return Math.max(1, messages.nanosUntil(count));
+        if(!bytes.tryAcquire(size)) {
+            if(count > 0) messages.release(count); // nichts entnehmen, s.o.
+            return Math.max(1, bytes.nanosUntil(size));
+        }
+        return 0;
+    }
+
+    /**
+     * @return Zeit in Nanosekunden, bis ein ausgeschöpftes Kontingent
+     *  wieder voll ist; so lange muss es auch ohne Verbindung erhalten bleiben
+     */
+    long refillNanos() {
+        return Math.max(messages.refillNanos(), bytes.refillNanos());
+    }
+}
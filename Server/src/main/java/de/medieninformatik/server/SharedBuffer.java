@@ -0,0 +1,96 @@
+package de.medieninformatik.server;
+
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Eine kodierte Nachricht in einem Direct Buffer aus dem BufferPool.
+ * Alle Empfänger einer Nachricht teilen sich denselben Puffer und lesen
+ * ihn über eigene read-only Sichten. Jeder Empfänger hält eine Referenz
+ * (retain), nach dem Schreiben gibt er sie ab (release); mit der letzten
+ * Referenz geht der Puffer zurück in den Pool.
+ */
+final class SharedBuffer {
+    private final BufferPool pool;
+    private final ByteBuffer buffer; // position 0, limit = Länge der Nachricht
+    private final State state;
+    private final Cleaner.Cleanable cleanable;
+
+    /**
+     * Zustand, den der Cleaner nach dem Einsammeln noch sieht. Darf den
+     * SharedBuffer selbst nicht referenzieren.
+     */
+    private static final class State implements Runnable {
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private final BufferPool pool;
+        private final Throwable allocation; // nur mit Leck-Erkennung
+
+        State(BufferPool pool, Throwable allocation) {
+            this.pool = pool;
+            this.allocation = allocation;
+        }
+
+        /**
+         * Vom Cleaner aufgerufen, wenn der SharedBuffer unerreichbar ist
+         */
+        @Override
+        public void run() {
+            if(refs.get() > 0) pool.leaked(allocation);
+        }
+    }
+
+    /**
+     * Konstruktor, nur für den BufferPool. Startet mit einer Referenz.
+     * @param pool Herkunft des Puffers
+     * @param buffer Inhalt, bereit zum Lesen
+     * @param cleaner Cleaner für die Leck-Erkennung oder null
+     */
+    SharedBuffer(BufferPool pool, ByteBuffer buffer, Cleaner cleaner) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.state = new State(pool, cleaner != null ? new Throwable("Puffer angelegt") : null);
+        this.cleanable = cleaner != null ? cleaner.register(this, state) : null;
+    }
+
+    /**
+     * Weitere Referenz, z.B. für einen weiteren Empfänger
+     * @return dieser Puffer
+     * @throws IllegalStateException falls der Puffer schon freigegeben ist
+     */
+    SharedBuffer retain() {
+        int refs;
+        do {
+            refs = state.refs.get();
+            if(refs <= 0) throw new IllegalStateException("Puffer bereits freigegeben");
+        } while(!state.refs.compareAndSet(refs, refs + 1));
+        return this;
+    }
+
+    /**
+     * Gibt eine Referenz ab. Mit der letzten geht der Puffer zurück in den Pool.
+     * @throws IllegalStateException bei mehr release() als Referenzen
+     */
+    void release() {
+        int refs = state.refs.decrementAndGet();
+        if(refs > 0) return;
+        if(refs < 0) throw new IllegalStateException("Puffer zu oft freigegeben");
+        if(cleanable != null) cleanable.clean(); // refs == 0: kein Leck
+        pool.recycle(buffer);
+    }
+
+    /**
+     * Eigene Sicht zum Schreiben: eigene position, Inhalt nur lesbar
+     * @return read-only Sicht auf die ganze Nachricht
+     */
+    ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return Länge der kodierten Nachricht in Bytes
+     */
+    int size() {
+        return buffer.limit();
+    }
+}
@@ -0,0 +1,66 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.transport.Acceptor;
+import de.medieninformatik.transport.ChannelTransport;
+import de.medieninformatik.transport.Transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Nimmt TCP-Verbindungen entgegen und setzt die Socket-Optionen
+ * aus der ChatServerConfig.
+ */
+class TcpAcceptor implements Acceptor {
+    private final ServerSocketChannel server;
+    private final ChatServerConfig config;
+
+    /**
+     * Konstruktor
+     * @param port an diesem Port wird auf Verbindungen gewartet
+     * @param config Backlog und Socket-Optionen
+     * @throws IOException
+     */
+    public TcpAcceptor(int port, ChatServerConfig config) throws IOException {
+        this.config = config;
+        this.server = ServerSocketChannel.open();
+        // SO_RCVBUF vor bind, damit das TCP-Fenster beim Verbindungsaufbau passt
+        if(config.getReceiveBufferSize() > 0)
+            server.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+        server.bind(new InetSocketAddress(port), config.getBacklog());
+    }
+
+    @Override
+    public Transport accept() throws IOException {
+        SocketChannel channel = server.accept();
+        try {
+            configure(channel);
+        } catch(IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ChannelTransport(channel);
+    }
+
+    /**
+     * Setzt die Socket-Optionen für eine angenommene Verbindung
+     * @param channel die Verbindung
+     * @throws IOException
+     */
+    private void configure(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, config.isTcpNoDelay());
+        channel.setOption(StandardSocketOptions.SO_KEEPALIVE, config.isKeepAlive());
+        if(config.getSendBufferSize() > 0)
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSendBufferSize());
+        if(config.getReceiveBufferSize() > 0)
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, config.getReceiveBufferSize());
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
@@ -0,0 +1,86 @@
+package de.medieninformatik.server;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-Bucket ohne Sperren.
+ * Statt Tokens zu zählen wird nur der Zeitpunkt gespeichert, ab dem der
+ * Bucket (rechnerisch) leer war; die verfügbaren Tokens ergeben sich aus
+ * der seitdem vergangenen Zeit (GCRA, "theoretical arrival time").
+ * Ein Zugriff ist damit ein einziger compareAndSet auf einem long.
+ */
+class TokenBucket {
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong tat; // Zeitpunkt, ab dem der Bucket leer war
+
+    /**
+     * Konstruktor
+     * @param tokensPerSecond Nachfüllrate
+     * @param capacity maximale Anzahl gesparter Tokens (Burst)
+     */
+    public TokenBucket(double tokensPerSecond, long capacity) {
+        if(tokensPerSecond <= 0 || capacity <= 0)
+            throw new IllegalArgumentException("Rate und Kapazität müssen positiv sein");
+        this.nanosPerToken = Math.max(1, Math.round(1e9 / tokensPerSecond));
+        this.burstNanos = nanosPerToken * capacity;
+        this.tat = new AtomicLong(System.nanoTime() - burstNanos); // startet voll
+    }
+
+    /**
+     * Entnimmt ein Token, falls vorhanden
+     * @return true falls ein Token entnommen wurde
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Entnimmt n Tokens, falls vorhanden. Mehr als die Kapazität wird
+     * auf die Kapazität begrenzt, sonst könnte die Anfrage nie erfüllt werden.
+     * @param n Anzahl Tokens
+     * @return true falls die Tokens entnommen wurden
+     */
+    public boolean tryAcquire(long n) {
+        long cost = cost(n);
+        while(true) {
+            long now = System.nanoTime();
+            long current = tat.get();
+            long next = Math.max(current, now - burstNanos) + cost;
+            if(next - now > 0) return false;
+            if(tat.compareAndSet(current, next)) return true;
+        }
+    }
+
+    /**
+     * Wartezeit, bis n Tokens vorhanden sind (ohne sie zu entnehmen)
+     * @param n Anzahl Tokens
+     * @return Wartezeit in Nanosekunden, 0 falls sofort verfügbar
+     */
+    public long nanosUntil(long n) {
+        long now = System.nanoTime();
+        long next = Math.max(tat.get(), now - burstNanos) + cost(n);
+        return Math.max(0, next - now);
+    }
+
+    /**
+     * Gibt n zuvor entnommene Tokens zurück, z.B. wenn eine zweite
+     * Prüfung danach fehlschlägt. Mehr als die Kapazität kann der
+     * Bucket dadurch nicht enthalten, siehe tryAcquire.
+     * @param n Anzahl Tokens
+     */
+    public void release(long n) {
+        tat.addAndGet(-cost(n));
+    }
+
+    /**
+     * @return Zeit in Nanosekunden, in der ein leerer Bucket wieder voll ist
+     */
+    public long refillNanos() {
+        return burstNanos;
+    }
+
+    private long cost(long n) {
+        return Math.min(n * nanosPerToken, burstNanos);
+    }
+}
@@ -5,6 +5,7 @@ module Prog3_8_3_TomcatMessages.Server.main {
     requires org.apache.tomcat.embed.el;
     requires java.desktop;
     requires java.instrument; // wichtig für Reflection von tomcat
+    requires jdk.jfr; // ChatEvents
     requires Prog3_8_3_TomcatMessages.Message.main;
     exports de.medieninformatik.server;
 }
@@ -0,0 +1,276 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Chunks;
+import de.medieninformatik.Message.Message;
+import de.medieninformatik.transport.PipeAcceptor;
+import de.medieninformatik.transport.Transport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Chat-Server mit Clients im selben Prozess über PipeTransport,
+ * ohne Sockets und Ports
+ */
+@Timeout(10)
+class ChatServerTest {
+    private PipeAcceptor acceptor;
+    private ChatServer server;
+    private final List<TestClient> clients = new ArrayList<>();
+
+    /**
+     * Client-Ende einer Verbindung, spricht das Protokoll direkt
+     */
+    private static final class TestClient {
+        private final Transport transport;
+        private final ObjectOutputStream out;
+        private final ObjectInputStream in;
+
+        TestClient(Transport transport) throws IOException {
+            this.transport = transport;
+            this.out = new ObjectOutputStream(transport.getOutputStream());
+            out.flush();
+            this.in = new ObjectInputStream(transport.getInputStream());
+        }
+
+        void write(Message msg) throws IOException {
+            out.writeObject(msg);
+            out.flush();
+        }
+
+        /**
+         * Liest bis zur nächsten Nachricht mit der gegebenen Aktion,
+         * PRESENCE und RESUME werden übersprungen
+         */
+        Message read(Message.Action action) throws IOException, ClassNotFoundException {
+            while(true) {
+                Message msg = (Message) in.readObject();
+                if(msg.action() == action) return msg;
+                if(msg.action() != Message.Action.PRESENCE && msg.action() != Message.Action.RESUME)
+                    fail("unerwartet: " + msg);
+            }
+        }
+
+        /**
+         * Liest bis zur ersten passenden Nachricht, alles davor wird übersprungen
+         */
+        Message skipTo(Predicate<Message> wanted) throws IOException, ClassNotFoundException {
+            while(true) {
+                Message msg = (Message) in.readObject();
+                if(wanted.test(msg)) return msg;
+            }
+        }
+    }
+
+    @BeforeEach
+    void startServer() {
+        acceptor = new PipeAcceptor();
+        server = new ChatServer(acceptor, new ChatServerConfig());
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        for(TestClient c : clients) c.transport.close();
+        server.stopServer();
+    }
+
+    /**
+     * Ersetzt den Server aus startServer durch einen mit anderen Einstellungen
+     */
+    private void restart(PipeAcceptor acceptor, ChatServerConfig config) {
+        server.stopServer();
+        this.acceptor = acceptor;
+        server = new ChatServer(acceptor, config);
+        server.start();
+    }
+
+    private TestClient connect() throws IOException {
+        TestClient c = new TestClient(acceptor.connect());
+        clients.add(c);
+        return c;
+    }
+
+    private TestClient join(String user) throws IOException {
+        TestClient c = connect();
+        c.write(new Message(Message.Action.JOIN, user, ""));
+        return c;
+    }
+
+    @Test
+    void broadcastReachesAllUsers() throws Exception {
+        TestClient anna = join("anna");
+        TestClient ben = join("ben");
+        anna.read(Message.Action.RESUME); // Anmeldung abgeschlossen
+        ben.read(Message.Action.RESUME);
+
+        anna.write(new Message(Message.Action.SEND, "anna", "hallo"));
+        Message atBen = ben.read(Message.Action.SEND);
+        Message atAnna = anna.read(Message.Action.SEND);
+        assertEquals("hallo", atBen.content());
+        assertEquals("anna", atBen.user());
+        assertEquals(atAnna.seq(), atBen.seq());
+        assertTrue(atBen.seq() > 0);
+    }
+
+    @Test
+    void broadcastDoesNotWaitForSearchIndex() throws Exception {
+        TestClient anna = join("anna");
+        TestClient ben = join("ben");
+        anna.read(Message.Action.RESUME);
+        ben.read(Message.Action.RESUME);
+
+        SearchIndex index = server.getSearchIndex();
+        synchronized(index) { // wie eine lange laufende Suche
+            anna.write(new Message(Message.Action.SEND, "anna", "gesucht"));
+            assertEquals("gesucht", ben.read(Message.Action.SEND).content());
+        }
+        // der Index-Thread holt die Nachricht danach nach
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while(index.search("gesucht", 1).isEmpty()) {
+            assertTrue(System.nanoTime() < deadline, "nicht indiziert");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void privateMessageOnlyReachesRecipient() throws Exception {
+        TestClient anna = join("anna");
+        TestClient ben = join("ben");
+        TestClient carla = join("carla");
+        for(TestClient c : List.of(anna, ben, carla)) c.read(Message.Action.RESUME);
+
+        anna.write(new Message(Message.Action.PRIVATE, "anna", "geheim", "ben"));
+        assertEquals("geheim", ben.read(Message.Action.PRIVATE).content());
+        assertEquals("geheim", anna.read(Message.Action.PRIVATE).content()); // Bestätigung
+
+        // carla bekommt als nächstes die öffentliche Nachricht, nicht die private
+        anna.write(new Message(Message.Action.SEND, "anna", "öffentlich"));
+        assertEquals("öffentlich", carla.read(Message.Action.SEND).content());
+    }
+
+    @Test
+    void duplicateNameIsRejected() throws Exception {
+        join("anna").read(Message.Action.RESUME);
+        Message reply = join("anna").read(Message.Action.LEAVE);
+        assertEquals("Nutzername bereits vergeben", reply.content());
+    }
+
+    @Test
+    void rejectedResumeFallsBackToJoin() throws Exception {
+        TestClient anna = connect();
+        anna.write(new Message(Message.Action.RESUME, "anna", "falsch", null, 0));
+        assertNull(anna.skipTo(m -> m.action() == Message.Action.RESUME).content());
+
+        // vor der Anmeldung: Hinweis statt Trennung
+        anna.write(new Message(Message.Action.SEND, "anna", "zu früh"));
+        Message notice = anna.skipTo(m -> m.action() == Message.Action.PRIVATE);
+        assertEquals(Message.SERVER, notice.user());
+        assertEquals("Nicht angemeldet, Nachricht verworfen", notice.content());
+
+        anna.write(new Message(Message.Action.JOIN, "anna", null));
+        assertNotNull(anna.skipTo(m -> m.action() == Message.Action.RESUME).content());
+        anna.write(new Message(Message.Action.SEND, "anna", "jetzt"));
+        assertEquals("jetzt", anna.read(Message.Action.SEND).content());
+    }
+
+    @Test
+    void resumeIsAcknowledgedWithNewToken() throws Exception {
+        TestClient anna = join("anna");
+        String token = anna.skipTo(m -> m.action() == Message.Action.RESUME).content();
+        anna.transport.close();
+
+        TestClient again = connect();
+        again.write(new Message(Message.Action.RESUME, "anna", token, null, 0));
+        Message ack = (Message) again.in.readObject();
+        assertEquals(Message.Action.RESUME, ack.action());
+        assertNotNull(ack.content());
+        assertNotEquals(token, ack.content());
+    }
+
+    @Test
+    void quotaDisconnectEndsSession() throws Exception {
+        ChatServerConfig config = new ChatServerConfig();
+        config.setQuotaPolicy(ChatServerConfig.QuotaPolicy.DISCONNECT);
+        config.setMessagesPerSecond(0.01);
+        config.setMessageBurst(1);
+        restart(new PipeAcceptor(), config);
+
+        TestClient anna = join("anna");
+        String token = anna.skipTo(m -> m.action() == Message.Action.RESUME).content();
+        anna.write(new Message(Message.Action.SEND, "anna", "eins"));
+        assertEquals("eins", anna.read(Message.Action.SEND).content());
+        anna.write(new Message(Message.Action.SEND, "anna", "zwei"));
+        assertThrows(EOFException.class, () -> anna.skipTo(m -> false));
+
+        // das alte Token gilt nicht mehr, der Client muss sich neu anmelden
+        TestClient again = connect();
+        again.write(new Message(Message.Action.RESUME, "anna", token, null, 0));
+        Message reply = again.skipTo(m -> m.action() == Message.Action.RESUME);
+        assertNull(reply.content());
+    }
+
+    @Test
+    void quotaSurvivesRejoin() throws Exception {
+        ChatServerConfig config = new ChatServerConfig();
+        config.setMessagesPerSecond(0.01);
+        config.setMessageBurst(1);
+        restart(new PipeAcceptor(), config);
+
+        TestClient anna = join("anna");
+        anna.write(new Message(Message.Action.SEND, "anna", "erste"));
+        assertEquals("erste", anna.read(Message.Action.SEND).content());
+        anna.write(new Message(Message.Action.LEAVE, "anna", null));
+        anna.read(Message.Action.LEAVE);
+
+        // neu angemeldet: das Kontingent ist weiterhin erschöpft
+        TestClient again = join("anna");
+        again.write(new Message(Message.Action.SEND, "anna", "zweite"));
+        assertEquals("Zu viele Nachrichten, werden verworfen", again.read(Message.Action.PRIVATE).content());
+    }
+
+    @Test
+    void droppedChunksAbortTransferForThatRecipient() throws Exception {
+        ChatServerConfig config = new ChatServerConfig();
+        config.setMaxQueuedChunks(2);
+        restart(new PipeAcceptor(1024), config); // kleine Puffer: ben liest nicht, sein Schreib-Thread blockiert
+        TestClient anna = join("anna");
+        TestClient ben = join("ben");
+        anna.read(Message.Action.RESUME);
+        ben.read(Message.Action.RESUME);
+
+        for(Message chunk : Chunks.split("anna", "x".repeat(40_000), null, 1, 1000)) anna.write(chunk);
+
+        Message notice = anna.skipTo(m -> m.action() == Message.Action.PRIVATE
+                && m.content().startsWith("Übertragung an"));
+        assertEquals("Übertragung an ben abgebrochen", notice.content());
+        Message atBen = ben.skipTo(m -> m.action() == Message.Action.PRIVATE);
+        assertEquals(Message.SERVER, atBen.user());
+        assertEquals("Übertragung von anna abgebrochen", atBen.content());
+    }
+
+    @Test
+    void nameWithLineBreakIsRejected() throws Exception {
+        Message reply = join("anna\n+mallory").read(Message.Action.LEAVE);
+        assertEquals("Ungültiger Nutzername", reply.content());
+    }
+
+    @Test
+    void serverNameIsReserved() throws Exception {
+        for(String name : List.of("Server", "server")) {
+            Message reply = join(name).read(Message.Action.LEAVE);
+            assertEquals("Ungültiger Nutzername", reply.content());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Message;
+import de.medieninformatik.Message.Presence;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceServiceTest {
+    private final List<Message> sent = new ArrayList<>();
+    private final PresenceService presence = new PresenceService(sent::add);
+
+    private Presence.Change flushed() {
+        presence.flush();
+        assertEquals(1, sent.size());
+        return Presence.decode(sent.remove(0));
+    }
+
+    @Test
+    void batchesChangesOfOneWindow() {
+        presence.joined("anna");
+        presence.joined("ben");
+        presence.left("carla");
+
+        Presence.Change change = flushed();
+        assertFalse(change.snapshot());
+        assertEquals(List.of("anna", "ben"), change.joined());
+        assertEquals(List.of("carla"), change.left());
+    }
+
+    @Test
+    void emptyWindowSendsNothing() {
+        presence.flush();
+        assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    void leaveAndRejoinSendsLastState() {
+        // wer sich zwischen left und joined anmeldet, bekam einen Snapshot ohne anna
+        presence.left("anna");
+        presence.joined("anna");
+
+        Presence.Change change = flushed();
+        assertEquals(List.of("anna"), change.joined());
+        assertTrue(change.left().isEmpty());
+    }
+
+    @Test
+    void joinAndLeaveSendsLastState() {
+        presence.joined("anna");
+        presence.left("anna");
+        presence.joined("anna");
+        presence.left("anna");
+
+        Presence.Change change = flushed();
+        assertTrue(change.joined().isEmpty());
+        assertEquals(List.of("anna"), change.left());
+    }
+
+    @Test
+    void windowsAreIndependent() {
+        presence.joined("anna");
+        flushed();
+        presence.left("anna");
+
+        assertEquals(List.of("anna"), flushed().left());
+    }
+}
@@ -0,0 +1,84 @@
+package de.medieninformatik.server;
+
+import de.medieninformatik.Message.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+
+    private static Message msg(long seq, String user, String text) {
+        return new Message(Message.Action.SEND, user, text, null, seq, null);
+    }
+
+    private static List<Long> seqs(List<SearchIndex.Hit> hits) {
+        return hits.stream().map(h -> h.message().seq()).toList();
+    }
+
+    @Test
+    void allWordsMustMatch() {
+        SearchIndex index = new SearchIndex(10_000);
+        index.add(msg(1, "anna", "Hallo Welt"));
+        index.add(msg(2, "ben", "hallo zusammen"));
+        index.add(msg(3, "anna", "Welt am Sonntag"));
+
+        assertEquals(List.of(2L, 1L), seqs(index.search("hallo", 10)));
+        assertEquals(List.of(1L), seqs(index.search("HALLO welt", 10)));
+        assertTrue(index.search("hallo sonntag", 10).isEmpty());
+    }
+
+    @Test
+    void userFacetFiltersByAuthor() {
+        SearchIndex index = new SearchIndex(10_000);
+        index.add(msg(1, "anna", "Hallo Welt"));
+        index.add(msg(2, "ben", "hallo zusammen"));
+        index.add(msg(3, "Anna", "noch einmal hallo"));
+
+        assertEquals(List.of(3L, 1L), seqs(index.search("user:anna hallo", 10)));
+        assertEquals(List.of(2L), seqs(index.search("user:ben", 10)));
+        assertTrue(index.search("user:carla hallo", 10).isEmpty());
+    }
+
+    @Test
+    void rankedByFrequencyThenRecency() {
+        SearchIndex index = new SearchIndex(10_000);
+        index.add(msg(1, "anna", "ja ja ja"));
+        index.add(msg(2, "anna", "ja"));
+        index.add(msg(3, "anna", "ja"));
+
+        List<SearchIndex.Hit> hits = index.search("ja", 2);
+        assertEquals(List.of(1L, 3L), seqs(hits));
+        assertEquals(3, hits.get(0).score());
+    }
+
+    @Test
+    void findsAcrossSealedAndMergedSegments() {
+        SearchIndex index = new SearchIndex(100_000);
+        for(int i = 1; i <= 5000; i++)
+            index.add(msg(i, "anna", i % 1000 == 0 ? "treffer " + i : "text " + i));
+        index.merge();
+
+        assertEquals(List.of(5000L, 4000L, 3000L, 2000L, 1000L), seqs(index.search("treffer", 10)));
+        assertEquals(List.of(4999L), seqs(index.search("4999", 10)));
+    }
+
+    @Test
+    void dropsOldestSegmentsBeyondMaxDocs() {
+        SearchIndex index = new SearchIndex(2048);
+        for(int i = 1; i <= 4096; i++) index.add(msg(i, "anna", "wort"));
+
+        List<SearchIndex.Hit> hits = index.search("wort", 10_000);
+        assertTrue(hits.size() <= 2048);
+        assertEquals(4096L, hits.get(0).message().seq());
+    }
+
+    @Test
+    void emptyQueryFindsNothing() {
+        SearchIndex index = new SearchIndex(100);
+        index.add(msg(1, "anna", "hallo"));
+        assertTrue(index.search("  !! ", 10).isEmpty());
+        assertTrue(index.search("hallo", 0).isEmpty());
+    }
+}
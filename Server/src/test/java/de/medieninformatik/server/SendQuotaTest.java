@@ -0,0 +1,63 @@
+package de.medieninformatik.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SendQuotaTest {
+
+    /**
+     * Kontingent, das während des Tests praktisch nicht nachfüllt
+     */
+    private static SendQuota quota(int messages, int bytes) {
+        ChatServerConfig config = new ChatServerConfig();
+        config.setMessagesPerSecond(0.01);
+        config.setMessageBurst(messages);
+        config.setBytesPerSecond(0.01);
+        config.setByteBurst(bytes);
+        return new SendQuota(config);
+    }
+
+    @Test
+    void limitsMessages() {
+        SendQuota quota = quota(2, 1000);
+        assertEquals(0, quota.tryAcquire(1, 10));
+        assertEquals(0, quota.tryAcquire(1, 10));
+        assertTrue(quota.tryAcquire(1, 10) > 0);
+    }
+
+    @Test
+    void limitsBytes() {
+        SendQuota quota = quota(10, 100);
+        assertEquals(0, quota.tryAcquire(1, 60));
+        assertTrue(quota.tryAcquire(1, 60) > 0);
+        assertEquals(0, quota.tryAcquire(1, 40));
+    }
+
+    @Test
+    void chunksOnlyCountBytes() {
+        SendQuota quota = quota(1, 1000);
+        assertEquals(0, quota.tryAcquire(0, 100));
+        assertEquals(0, quota.tryAcquire(0, 100));
+        assertEquals(0, quota.tryAcquire(1, 100)); // letztes Teilstück
+        assertTrue(quota.tryAcquire(1, 1) > 0);
+    }
+
+    @Test
+    void failedAcquireTakesNothing() {
+        SendQuota quota = quota(2, 100);
+        assertEquals(0, quota.tryAcquire(1, 60));
+        assertTrue(quota.tryAcquire(1, 60) > 0, "zu viele Bytes");
+        assertEquals(0, quota.tryAcquire(1, 40), "Nachricht wurde nicht verbraucht");
+    }
+
+    @Test
+    void refillCoversSlowerBucket() {
+        ChatServerConfig config = new ChatServerConfig();
+        config.setMessagesPerSecond(10);
+        config.setMessageBurst(10); // 1 s
+        config.setBytesPerSecond(100);
+        config.setByteBurst(400); // 4 s
+        assertEquals(4_000_000_000L, new SendQuota(config).refillNanos());
+    }
+}
@@ -0,0 +1,49 @@
+package de.medieninformatik.server;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void startsFullAndAllowsBurst() {
+        TokenBucket bucket = new TokenBucket(0.01, 3); // füllt während des Tests nicht nach
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire(2));
+        assertFalse(bucket.tryAcquire());
+        assertTrue(bucket.nanosUntil(1) > 0);
+    }
+
+    @Test
+    void requestsAboveCapacityAreCapped() {
+        TokenBucket bucket = new TokenBucket(0.01, 3);
+        assertTrue(bucket.tryAcquire(100));
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void releaseReturnsTokens() {
+        TokenBucket bucket = new TokenBucket(0.01, 2);
+        assertTrue(bucket.tryAcquire(2));
+        bucket.release(1);
+        assertEquals(0, bucket.nanosUntil(1));
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    void refillsAtRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(1000, 1);
+        assertTrue(bucket.tryAcquire());
+        assertEquals(1_000_000, bucket.refillNanos());
+        Thread.sleep(5);
+        assertTrue(bucket.tryAcquire());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
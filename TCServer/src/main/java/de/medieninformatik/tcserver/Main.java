@@ -1,6 +1,7 @@
 package de.medieninformatik.tcserver;
 
 
+import de.medieninformatik.web.StaticAssetServlet;
 import org.apache.catalina.Context;
 import org.apache.catalina.Service;
 import org.apache.catalina.connector.Connector;
@@ -26,6 +27,12 @@ public class Main {
         Path docBase = Paths.get(doc).toAbsolutePath();
         Context ctx = tomcat.addWebapp(webapps, docBase.toString());
 
+        // statische Dateien vorkomprimiert aus dem Speicher, mit ETag und 304
+        StaticAssetServlet assets = new StaticAssetServlet(docBase);
+        Tomcat.addServlet(ctx, "assets", assets);
+        for(String path : assets.paths())
+            ctx.addServletMappingDecoded(path, "assets");
+
         Connector con = new Connector();
         con.setPort(port);
 
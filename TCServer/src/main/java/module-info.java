@@ -5,5 +5,6 @@ module NewsWS.Server.main {
     requires org.apache.tomcat.embed.el;
     requires java.desktop;
     requires java.instrument; // wichtig für Reflection von tomcat
+    requires Prog3_8_3_TomcatMessages.Message.main; // StaticAssetServlet
     exports de.medieninformatik.tcserver;
 }